@@ -50,6 +50,16 @@ public class MappingEntry {
         return name;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        return obj != null && obj.getClass() == getClass() && ((MappingEntry) obj).name.equals(name);
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode() * 31 + name.hashCode();
+    }
+
     /**
      * Represents a package mapping entry.
      *
@@ -90,6 +100,16 @@ public class MappingEntry {
             return owner;
         }
 
+        @Override
+        public boolean equals(Object obj) {
+            return super.equals(obj) && ((Field) obj).owner.equals(owner);
+        }
+
+        @Override
+        public int hashCode() {
+            return super.hashCode() * 31 + owner.hashCode();
+        }
+
     }
 
     /**
@@ -115,6 +135,16 @@ public class MappingEntry {
             return desc;
         }
 
+        @Override
+        public boolean equals(Object obj) {
+            return super.equals(obj) && ((Method) obj).owner.equals(owner) && ((Method) obj).desc.equals(desc);
+        }
+
+        @Override
+        public int hashCode() {
+            return (super.hashCode() * 31 + owner.hashCode()) * 31 + desc.hashCode();
+        }
+
     }
 
 }
@@ -2,7 +2,9 @@ package net.minecraftforge.gradle.moddev
 
 import net.minecraftforge.gradle.api.mapping.MappingProvider
 import net.minecraftforge.gradle.api.mapping.MappingVersion
+import net.minecraftforge.gradle.shared.Constants
 import net.minecraftforge.gradle.shared.impl.MCLauncherArtifactProvider
+import net.minecraftforge.gradle.shared.impl.MCLibrariesArtifactProvider
 import net.minecraftforge.gradle.shared.impl.MCPMappingProvider
 import net.minecraftforge.gradle.shared.mappings.RemappedDependency
 import net.minecraftforge.gradle.shared.repo.CustomRepository
@@ -27,25 +29,30 @@ class ForgeGradleDSL {
         }
 
         fg.project.repositories.metaClass.mcp = { ->
-            return fg.project.objects.newInstance(MCPMappingProvider.class)
+            def provider = fg.project.objects.newInstance(MCPMappingProvider.class)
+            provider.cacheDir = new File(fg.project.gradle.gradleUserHomeDir, "caches/forgegradle/mappings")
+            return provider
         }
 
         fg.project.repositories.metaClass.forgeMaven = {
             return fg.project.repositories.maven {
                 it.name = "forge"
-                it.url = "http://files.minecraftforge.net/maven"
+                it.url = Constants.MAVEN_FORGE
             }
         }
 
-        fg.project.repositories.metaClass.minecraftMaven = {
-            CustomRepository.add(fg.project.repositories, "mclauncher", "https://launcher.mojang.com/", new MCLauncherArtifactProvider(), null)
-            fg.project.repositories.maven {
-                it.name = "mclibraries"
-                it.url = "https://libraries.minecraft.net"
-                it.metadataSources {
-                    it.artifact() // Don't even start looking for these guys' deps... It ends in hell
-                }
-            }
+        fg.project.repositories.metaClass.minecraftMaven = { ->
+            fg.project.repositories.minecraftMaven({ launcher -> } as Action)
+        }
+        fg.project.repositories.metaClass.minecraftMaven = { Action action ->
+            def launcher = new MCLauncherArtifactProvider(new File(fg.project.gradle.gradleUserHomeDir, "caches/forgegradle/manifests"),
+                    fg.project.gradle.startParameter.offline)
+            action.execute(launcher)
+            fg.launcher = launcher // So the tasks use the same manifests and mirrors
+            CustomRepository.add(fg.project, "mclauncher", launcher.launcherMirrors.primary, launcher, fg.artifactStore)
+            // Only serves artifacts, so we don't even start looking for these guys' deps... It ends in hell
+            CustomRepository.add(fg.project, "mclibraries", launcher.libraryMirrors.primary,
+                    new MCLibrariesArtifactProvider(launcher, launcher.libraryMirrors), fg.artifactStore)
         }
     }
 
@@ -76,6 +83,9 @@ class ForgeGradleDSL {
         fg.project.dependencies.metaClass.minecraftServer = { String version ->
             fg.project.dependencies.remap("net.minecraft:server-pure:${fg.fgExt.minecraft.version}", mapping: 'notch-mcp')
         }
+        fg.project.dependencies.metaClass.minecraftJoined = { String version ->
+            fg.project.dependencies.remap("net.minecraft:joined:${fg.fgExt.minecraft.version}", mapping: 'notch-mcp')
+        }
     }
 
 }
\ No newline at end of file
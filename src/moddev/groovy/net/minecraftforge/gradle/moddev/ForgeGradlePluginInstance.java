@@ -2,13 +2,22 @@ package net.minecraftforge.gradle.moddev;
 
 import net.minecraftforge.gradle.api.moddev.ForgeGradleAPI;
 import net.minecraftforge.gradle.shared.Constants;
+import net.minecraftforge.gradle.shared.impl.MCLauncherArtifactProvider;
 import net.minecraftforge.gradle.shared.mappings.MappingManagerImpl;
 import net.minecraftforge.gradle.shared.mappings.Remapper;
+import net.minecraftforge.gradle.shared.repo.ContentAddressedArtifactStore;
 import net.minecraftforge.gradle.shared.repo.MappingRepo;
 import net.minecraftforge.gradle.shared.repo.RemappingRepo;
+import net.minecraftforge.gradle.shared.tasks.DownloadAssetsTask;
+import net.minecraftforge.gradle.shared.tasks.ExtractNativesTask;
 import net.minecraftforge.gradle.shared.util.DependencyResolver;
+import net.minecraftforge.gradle.shared.util.FixtureFetcher;
+import net.minecraftforge.gradle.shared.util.HttpFetcher;
 import org.gradle.api.Project;
 
+import java.io.File;
+import java.util.Locale;
+
 /**
  * A single instance of the ForgeGradle plugin.
  */
@@ -20,6 +29,9 @@ public class ForgeGradlePluginInstance {
     // Internal systems
     public final DependencyResolver dependencyResolver;
     public final MappingManagerImpl mappings;
+    public final ContentAddressedArtifactStore artifactStore;
+    // Set up through minecraftMaven, if it was used
+    public MCLauncherArtifactProvider launcher;
 
     // Extensions
     public ForgeGradleExtension fgExt;
@@ -28,7 +40,19 @@ public class ForgeGradlePluginInstance {
         this.project = project;
         this.dependencyResolver = new DependencyResolver(project);
         this.mappings = new MappingManagerImpl(project, dependencyResolver);
+        this.artifactStore = new ContentAddressedArtifactStore();
 
+        // Serve everything from a fixture directory instead of the network, for reproducible benchmarks and offline CI
+        Object fixtures = project.findProperty("forgegradle.http.fixtures");
+        if (fixtures != null) {
+            Object mode = project.findProperty("forgegradle.http.mode");
+            HttpFetcher fetcher = new FixtureFetcher(project.file(fixtures),
+                    mode == null ? FixtureFetcher.Mode.REPLAY : FixtureFetcher.Mode.valueOf(mode.toString().toUpperCase(Locale.ROOT)),
+                    HttpFetcher.DIRECT);
+            HttpFetcher.setDefault(fetcher);
+            // Only for this build, later builds in the same daemon go back to the network
+            project.getGradle().buildFinished(result -> HttpFetcher.restoreDefault(fetcher));
+        }
     }
 
     public void init() {
@@ -41,10 +65,31 @@ public class ForgeGradlePluginInstance {
 
     public void afterEvaluate() {
         mappings.addRepositories();
-        MappingRepo.add(project, mappings, fgExt.minecraft.version, "mappings", "https://amadorn.es");
-        RemappingRepo.add(project, dependencyResolver, fgExt.mappings.provider, fgExt.mappings.channel, fgExt.mappings.version,
-                fgExt.minecraft.version, "remapping", "https://amadornes.com");
+        MappingRepo.add(project, mappings, artifactStore, fgExt.minecraft.version, "mappings", "https://amadorn.es");
+        RemappingRepo.add(project, dependencyResolver, artifactStore, fgExt.mappings.provider, fgExt.mappings.channel,
+                fgExt.mappings.version, fgExt.minecraft.version, "remapping", "https://amadornes.com");
         Remapper.fixDependencies(project, dependencyResolver);
+
+        project.getTasks().create("downloadAssets", DownloadAssetsTask.class, task -> {
+            task.version(fgExt.minecraft.version);
+            task.launcher(getLauncher());
+        });
+        project.getTasks().create("extractNatives", ExtractNativesTask.class, task -> {
+            task.version(fgExt.minecraft.version);
+            task.launcher(getLauncher());
+            task.store(artifactStore);
+        });
+    }
+
+    /**
+     * Gets the launcher provider set up through {@code minecraftMaven}, or one with the default mirrors if there's none.
+     */
+    public MCLauncherArtifactProvider getLauncher() {
+        if (launcher == null) {
+            launcher = new MCLauncherArtifactProvider(new File(project.getGradle().getGradleUserHomeDir(), "caches/forgegradle/manifests"),
+                    project.getGradle().getStartParameter().isOffline());
+        }
+        return launcher;
     }
 
 }
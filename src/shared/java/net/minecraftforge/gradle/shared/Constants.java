@@ -7,7 +7,7 @@ public final class Constants {
 
     public static final String FORGE_GRADLE_EXTENSION_NAME = "forgegradle";
 
-    public static final String MAVEN_FORGE = "http://files.minecraftforge.net/maven/";
+    public static final String MAVEN_FORGE = "https://files.minecraftforge.net/maven/";
 
     public static final String MC_VERSION_MANIFEST = "https://launchermeta.mojang.com/mc/game/version_manifest.json";
 
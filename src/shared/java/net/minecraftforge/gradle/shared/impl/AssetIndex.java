@@ -0,0 +1,98 @@
+package net.minecraftforge.gradle.shared.impl;
+
+import org.gradle.internal.hash.HashValue;
+import org.gradle.internal.impldep.com.google.gson.Gson;
+import org.gradle.internal.impldep.com.google.gson.JsonElement;
+import org.gradle.internal.impldep.com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An asset index, as referenced by the {@code assetIndex} of a version manifest.<br/>
+ * Maps asset names to the objects holding their contents, which are stored by hash.
+ */
+public class AssetIndex {
+
+    /**
+     * Reads an asset index from a file.
+     */
+    public static AssetIndex read(File file) throws IOException {
+        JsonObject json;
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            json = new Gson().fromJson(reader, JsonObject.class);
+        }
+
+        Map<String, Asset> assets = new LinkedHashMap<>();
+        Map<String, Asset> objects = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject("objects").entrySet()) {
+            JsonObject object = entry.getValue().getAsJsonObject();
+            String hash = object.get("hash").getAsString();
+            // Many assets share the same contents, so only keep one object per hash
+            Asset asset = objects.computeIfAbsent(hash, $ -> new Asset(hash, object.get("size").getAsLong()));
+            assets.put(entry.getKey(), asset);
+        }
+        return new AssetIndex(assets, objects.values());
+    }
+
+    private final Map<String, Asset> assets;
+    private final Collection<Asset> objects;
+
+    private AssetIndex(Map<String, Asset> assets, Collection<Asset> objects) {
+        this.assets = Collections.unmodifiableMap(assets);
+        this.objects = Collections.unmodifiableCollection(objects);
+    }
+
+    /**
+     * Gets every asset in the index, by name.
+     */
+    public Map<String, Asset> getAssets() {
+        return assets;
+    }
+
+    /**
+     * Gets the objects the assets are stored in, without duplicates.
+     */
+    public Collection<Asset> getObjects() {
+        return objects;
+    }
+
+    public static class Asset {
+
+        private final String hash;
+        private final long size;
+
+        private Asset(String hash, long size) {
+            this.hash = hash;
+            this.size = size;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public HashValue getSha1() {
+            return HashValue.parse(hash);
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Gets the path of the object, relative to the root of an object store or of the resources server.
+         */
+        public String getPath() {
+            return hash.substring(0, 2) + "/" + hash;
+        }
+
+    }
+
+}
@@ -1,47 +1,170 @@
 package net.minecraftforge.gradle.shared.impl;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import net.minecraftforge.gradle.shared.Constants;
+import net.minecraftforge.gradle.shared.repo.ArtifactMetadata;
 import net.minecraftforge.gradle.shared.repo.CustomRepository;
+import net.minecraftforge.gradle.shared.repo.MavenArtifactPath;
 import net.minecraftforge.gradle.shared.repo.StreamedResource;
 import net.minecraftforge.gradle.shared.util.IOSupplier;
+import net.minecraftforge.gradle.shared.util.JarMerger;
+import net.minecraftforge.gradle.shared.util.JsonCache;
+import net.minecraftforge.gradle.shared.util.MirrorSet;
 import net.minecraftforge.gradle.shared.util.POMBuilder;
+import net.minecraftforge.gradle.shared.util.PrefixMatcher;
+import net.minecraftforge.gradle.shared.util.RawZipFilter;
 import net.minecraftforge.gradle.shared.util.Util;
 import org.gradle.api.artifacts.ArtifactIdentifier;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.hash.HashUtil;
 import org.gradle.internal.hash.HashValue;
 import org.gradle.internal.impldep.com.google.gson.JsonElement;
 import org.gradle.internal.impldep.com.google.gson.JsonObject;
-import org.gradle.internal.impldep.org.apache.commons.io.IOUtils;
 
-import java.io.ByteArrayOutputStream;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
-import java.util.jar.JarOutputStream;
+import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * An artifact provider for Minecraft client and server jars.
  */
 public class MCLauncherArtifactProvider extends CustomRepository.ArtifactProvider.Simple {
 
-    private final Cache<String, JsonObject> manifests = CacheBuilder.newBuilder().expireAfterWrite(30, TimeUnit.MINUTES).build();
-//    private final Map<String, HashValue> hashes = new HashMap<>();
-
-    public MCLauncherArtifactProvider() {
+    // What the server jar used to bundle, for when the libraries can't be looked at
+    private static final List<String> LEGACY_SERVER_EXCLUSIONS = Arrays.asList(
+            "org/bouncycastle/", "org/apache/", "com/google/", "com/mojang/authlib/", "com/mojang/util/", "gnu/trove/",
+            "io/netty/", "javax/annotation/", "argo/", "it/unimi/dsi/fastutil/");
+
+    // How long a mirror can take before another one is raced against it, in milliseconds
+    private static final long HEDGE_DELAY = 3000;
+    // How long to stick to the legacy server exclusions after the libraries couldn't be looked at, before trying again
+    private static final long FALLBACK_PERIOD = TimeUnit.DAYS.toMillis(1);
+
+    // Versions of what each generator outputs, which are part of the keys the outputs are stored under.
+    // Bump them whenever a generator's output changes, so older outputs aren't served from the store anymore
+    private static final int POM_FORMAT = 1;
+    private static final int PURE_SERVER_FORMAT = 1;
+    private static final int JOINED_FORMAT = 1;
+
+    private static final Logger LOGGER = Logging.getLogger(MCLauncherArtifactProvider.class);
+
+    private final File cacheDir;
+    private final JsonCache cache;
+    // Version manifests, by version id
+    private final Map<String, JsonObject> manifests = new ConcurrentHashMap<>();
+    // Generated POMs, by coordinates and platform
+    private final Map<String, byte[]> poms = new ConcurrentHashMap<>();
+    // URL of every version's manifest, by version id. Built once from the top-level manifest
+    private volatile Map<String, String> versions;
+    // Download info of every library seen in a version manifest, by maven coordinates
+    private final Map<String, JsonObject> libraries = new ConcurrentHashMap<>();
+
+    // Prefixes of the server jar entries that belong to libraries, and so are left out of the pure server jar
+    @Nullable
+    private volatile List<String> serverExclusions = null;
+    private final Set<String> extraServerExclusions = ConcurrentHashMap.newKeySet();
+    private final Map<HashValue, CompletableFuture<List<String>>> serverExclusionsByKey = new ConcurrentHashMap<>();
+
+    // Where the game jars, the libraries they depend on and their assets are downloaded from
+    private final MirrorSet launcherMirrors = new MirrorSet(HEDGE_DELAY, "https://launcher.mojang.com/");
+    private final MirrorSet libraryMirrors = new MirrorSet(HEDGE_DELAY, "https://libraries.minecraft.net/");
+    private final MirrorSet assetMirrors = new MirrorSet(HEDGE_DELAY, "https://resources.download.minecraft.net/");
+
+    /**
+     * @param cacheDir Where downloaded manifests are kept between builds.
+     * @param offline  Whether to only use manifests that were downloaded before.
+     */
+    public MCLauncherArtifactProvider(File cacheDir, boolean offline) {
+        this.cacheDir = cacheDir;
+        this.cache = new JsonCache(cacheDir, offline);
         addExtensionProvider("jar", this::getJar);
-//        addExtensionProvider("jar.sha1", this::getJarHash);
         addExtensionProvider("pom", this::getPOM);
+        addMetadataProvider("jar", this::getJarMetadata);
+    }
+
+    /**
+     * Replaces the entry prefixes left out of the pure server jar, which are otherwise the packages of the
+     * libraries listed in the version manifest.
+     */
+    public void serverExclusions(Collection<String> prefixes) {
+        this.serverExclusions = new ArrayList<>(prefixes);
+        serverExclusionsByKey.clear();
+    }
+
+    /**
+     * Leaves more entry prefixes out of the pure server jar, on top of the default ones.
+     */
+    public void excludeFromServer(String... prefixes) {
+        extraServerExclusions.addAll(Arrays.asList(prefixes));
+        serverExclusionsByKey.clear();
+    }
+
+    /**
+     * Adds a mirror of {@code https://launcher.mojang.com/}, which game jars can be downloaded from instead.
+     */
+    public void launcherMirror(String url) {
+        launcherMirrors.add(url);
+    }
+
+    /**
+     * Adds a mirror of {@code https://libraries.minecraft.net/}, which libraries can be downloaded from instead.
+     */
+    public void libraryMirror(String url) {
+        libraryMirrors.add(url);
+    }
+
+    /**
+     * Adds a mirror of {@code https://resources.download.minecraft.net/}, which asset objects can be downloaded from instead.
+     */
+    public void assetMirror(String url) {
+        assetMirrors.add(url);
+    }
+
+    public MirrorSet getLauncherMirrors() {
+        return launcherMirrors;
+    }
+
+    public MirrorSet getLibraryMirrors() {
+        return libraryMirrors;
+    }
+
+    public MirrorSet getAssetMirrors() {
+        return assetMirrors;
+    }
+
+    @Override
+    public boolean prefetchDependencies() {
+        return true;
     }
 
     @Override
     protected boolean validate(ArtifactIdentifier identifier) {
         String group = identifier.getModuleVersionIdentifier().getGroup();
         String name = identifier.getModuleVersionIdentifier().getName();
-        return group.equals("net.minecraft") && (name.equals("client") || name.equals("server-pure"));
+        return group.equals("net.minecraft") && (name.equals("client") || name.equals("server-pure") || name.equals("joined"));
     }
 
     private IOSupplier<StreamedResource> getJar(ArtifactIdentifier identifier) throws IOException {
@@ -50,24 +173,23 @@ public class MCLauncherArtifactProvider extends CustomRepository.ArtifactProvide
             return getClientArtifact(identifier); // Get the client jar
         } else if (name.equals("server-pure")) {
             return getPureServerArtifact(identifier); // Get the pure server jar
+        } else if (name.equals("joined")) {
+            return getJoinedArtifact(identifier); // Get the client and pure server jars merged together
         }
         return null;
     }
 
-//    private IOSupplier<StreamedResource> getJarHash(ArtifactIdentifier identifier) throws IOException {
-//        System.out.println("Asking for hash of " + identifier + " ;_;");
-//        String hashID = getHashID(identifier);
-//        HashValue hash = hashes.get(hashID);
-//        if (hash == null) {
-//            IOSupplier<StreamedResource> supplier = getJar(identifier);
-//            if (supplier == null) return null;
-//            StreamedResource res = supplier.get();
-//            hash = res.getMetadata(null).getSha1();
-//            hashes.put(hashID, hash);
-//        }
-//        byte[] hashBytes = hash.asHexString().getBytes();
-//        return () -> new StreamedResource.ByteArrayStreamedResource(hashBytes);
-//    }
+    private ArtifactMetadata getJarMetadata(ArtifactIdentifier identifier) throws IOException {
+        // Only the client jar is served as-is, so its manifest entry describes it exactly
+        if (!identifier.getModuleVersionIdentifier().getName().equals("client")) return null;
+
+        String version = identifier.getModuleVersionIdentifier().getVersion();
+        JsonObject manifest = getManifest(version);
+        if (manifest == null) return null;
+
+        JsonObject artifact = manifest.getAsJsonObject("downloads").getAsJsonObject("client");
+        return new ArtifactMetadata(artifact.get("size").getAsLong(), HashValue.parse(artifact.get("sha1").getAsString()));
+    }
 
     private IOSupplier<StreamedResource> getClientArtifact(ArtifactIdentifier identifier) throws IOException {
         String version = identifier.getModuleVersionIdentifier().getVersion();
@@ -79,11 +201,10 @@ public class MCLauncherArtifactProvider extends CustomRepository.ArtifactProvide
         String urlString = artifact.get("url").getAsString();
         long size = artifact.get("size").getAsLong();
         HashValue hash = HashValue.parse(artifact.get("sha1").getAsString());
-//        hashes.put(getHashID(identifier), hash);
 
         // Create a streamed resource with that metadata
         URL url = new URL(urlString);
-        return () -> StreamedResource.ofURL(url, size, hash);
+        return () -> StreamedResource.ofURL(url, size, hash).withMirrors(launcherMirrors);
     }
 
     private IOSupplier<StreamedResource> getPureServerArtifact(ArtifactIdentifier identifier) throws IOException {
@@ -91,33 +212,87 @@ public class MCLauncherArtifactProvider extends CustomRepository.ArtifactProvide
         JsonObject manifest = getManifest(version);
         if (manifest == null) return null;
 
-        // Get the artifact URL
-        JsonObject artifact = manifest.getAsJsonObject("downloads").getAsJsonObject("server");
-        String url = artifact.get("url").getAsString();
+        PureServer server = getPureServer(version, manifest);
+        return () -> StreamedResource.ofFileSupplier(() -> filterServerJar(server)).withHash(server.key).deleteOnClose();
+    }
 
-        JarInputStream is = new JarInputStream(new URL(url).openStream());
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        JarOutputStream os = new JarOutputStream(baos);
+    private IOSupplier<StreamedResource> getJoinedArtifact(ArtifactIdentifier identifier) throws IOException {
+        String version = identifier.getModuleVersionIdentifier().getVersion();
+        JsonObject manifest = getManifest(version);
+        if (manifest == null) return null;
 
-        // Ignore any entry that's not allowed
-        JarEntry entry;
-        while ((entry = is.getNextJarEntry()) != null) {
-            if (!isServerEntryValid(entry)) continue;
-            os.putNextEntry(entry);
-            IOUtils.copyLarge(is, os, 0, entry.getSize());
-            os.closeEntry();
-        }
+        JsonObject client = manifest.getAsJsonObject("downloads").getAsJsonObject("client");
+        URL clientURL = new URL(client.get("url").getAsString());
+        long clientSize = client.get("size").getAsLong();
+        HashValue clientHash = HashValue.parse(client.get("sha1").getAsString());
+        PureServer server = getPureServer(version, manifest);
 
-        os.close();
-        is.close();
+        // The merged jar only depends on both of its inputs, so that's what identifies the output
+        HashValue key = HashUtil.createHash("joined:" + JOINED_FORMAT + ":" + clientHash.asZeroPaddedHexString(40) + ":" + server.key.asZeroPaddedHexString(40), "SHA1");
+        return () -> StreamedResource.ofFileSupplier(() -> mergeJars(clientURL, clientSize, clientHash, server)).withHash(key).deleteOnClose();
+    }
 
-//        hashes.put(getHashID(identifier), HashUtil.sha1(baos.toByteArray()));
+    private PureServer getPureServer(String version, JsonObject manifest) throws IOException {
+        // Get the artifact metadata
+        JsonObject artifact = manifest.getAsJsonObject("downloads").getAsJsonObject("server");
+        URL url = new URL(artifact.get("url").getAsString());
+        long size = artifact.get("size").getAsLong();
+        HashValue hash = HashValue.parse(artifact.get("sha1").getAsString());
 
-        // Create a streamed resource from the resulting bytes
-        return () -> StreamedResource.ofBytes(baos.toByteArray());
+        // What's excluded is only worked out when the jar is produced, since that means going through the libraries.
+        // It only depends on the version manifest and the configured exclusions, so those identify the output instead
+        List<String> configured = serverExclusions;
+        List<String> extra = new ArrayList<>(new TreeSet<>(extraServerExclusions));
+        boolean legacy = configured == null && isLibraryFallbackActive(version);
+        String exclusions = configured == null ? (legacy ? "legacy" : "libraries") : "only:" + String.join(",", new TreeSet<>(configured));
+        HashValue key = HashUtil.createHash("server-pure:" + PURE_SERVER_FORMAT + ":" + hash.asZeroPaddedHexString(40) + ":"
+                + getVersions().get(version) + ":" + exclusions + ":" + String.join(",", extra), "SHA1");
+        return new PureServer(version, manifest, configured, extra, legacy, url, size, hash, key);
     }
 
-    private IOSupplier<StreamedResource> getPOM(ArtifactIdentifier identifier) {
+    private File mergeJars(URL clientURL, long clientSize, HashValue clientHash, PureServer server) throws IOException {
+        // Get both jars onto disk at the same time, since the merger needs random access to them
+        CompletableFuture<File> clientFuture = Util.supplyAsync(() -> launcherMirrors.download(clientURL, clientSize, clientHash), CustomRepository.getExecutor());
+        File serverJar = null, clientJar = null;
+        File tmp = File.createTempFile("joined", ".jar");
+        try {
+            serverJar = filterServerJar(server);
+            clientJar = Util.join(clientFuture);
+            JarMerger.merge(clientJar, serverJar, tmp, CustomRepository.getExecutor());
+        } catch (IOException ex) {
+            tmp.delete();
+            throw ex;
+        } finally {
+            if (serverJar != null) serverJar.delete();
+            if (clientJar != null) {
+                clientJar.delete();
+            } else {
+                clientFuture.thenAccept(File::delete); // Don't leave it behind if we failed before it was done
+            }
+        }
+        return tmp;
+    }
+
+    private File filterServerJar(PureServer server) throws IOException {
+        // Look at the libraries while the vanilla jar is downloading
+        CompletableFuture<PrefixMatcher> exclusions = Util.supplyAsync(() -> new PrefixMatcher(getServerExclusions(server)), CustomRepository.getExecutor());
+        // The filter needs random access to the vanilla jar, so get it onto disk (verified against the manifest) first
+        File jar = launcherMirrors.download(server.url, server.size, server.hash);
+        File tmp = File.createTempFile("server-pure", ".jar");
+        try {
+            // Copy the entries we keep as they are, without inflating or deflating anything
+            PrefixMatcher excluded = Util.join(exclusions);
+            RawZipFilter.filter(jar, tmp, name -> isServerEntryValid(name, excluded));
+        } catch (IOException ex) {
+            tmp.delete();
+            throw ex;
+        } finally {
+            jar.delete();
+        }
+        return tmp;
+    }
+
+    private IOSupplier<StreamedResource> getPOM(ArtifactIdentifier identifier) throws IOException {
         String version = identifier.getModuleVersionIdentifier().getVersion();
         JsonObject manifest = getManifest(version);
         if (manifest == null) return null;
@@ -125,6 +300,13 @@ public class MCLauncherArtifactProvider extends CustomRepository.ArtifactProvide
         String group = identifier.getModuleVersionIdentifier().getGroup();
         String name = identifier.getModuleVersionIdentifier().getName();
 
+        // The POM only depends on the version manifest and the platform, so that's what identifies it
+        String key = group + ":" + name + ":" + version + ":" + Util.getOS() + ":" + System.getProperty("os.arch");
+        HashValue hash = HashUtil.createHash("pom:" + POM_FORMAT + ":" + key + ":" + getVersions().get(version), "SHA1");
+        return () -> StreamedResource.ofByteSupplier(() -> poms.computeIfAbsent(key, $ -> buildPOM(manifest, group, name, version))).withHash(hash);
+    }
+
+    private byte[] buildPOM(JsonObject manifest, String group, String name, String version) {
         // Start building a POM
         POMBuilder builder = new POMBuilder(group, name, version);
         builder.description(name);
@@ -151,19 +333,61 @@ public class MCLauncherArtifactProvider extends CustomRepository.ArtifactProvide
                     builder.dependencies().add(libName, "test").withClassifier("test");
                 }
                 // Locate natives if required
-                if (lib.has("natives")) {
-                    JsonElement classifier = lib.getAsJsonObject("natives").get(Util.getOS());
-                    if (classifier != null) {
-                        builder.dependencies().add(libName, "runtime").withClassifier(classifier.getAsString());
-                    }
+                String classifier = getNativesClassifier(lib);
+                if (classifier != null) {
+                    builder.dependencies().add(libName, "runtime").withClassifier(classifier);
                 }
             }
         }
 
         // Return the resulting POM file
-        String pom = builder.tryBuild();
-        if (pom == null) return null;
-        return () -> StreamedResource.ofBytes(pom.getBytes());
+        try {
+            return builder.buildBytes();
+        } catch (XMLStreamException ex) {
+            throw new RuntimeException("Failed to generate the POM for " + group + ":" + name + ":" + version, ex);
+        }
+    }
+
+    /**
+     * Gets the native libraries a version needs on this platform, along with what to leave out when extracting them.
+     */
+    public List<Natives> getNatives(String version) throws IOException {
+        JsonObject manifest = getManifest(version);
+        if (manifest == null) return Collections.emptyList();
+
+        List<Natives> natives = new ArrayList<>();
+        for (JsonElement libElement : manifest.getAsJsonArray("libraries")) {
+            JsonObject lib = libElement.getAsJsonObject();
+            if (!isLibraryAllowed(lib)) continue;
+
+            String classifier = getNativesClassifier(lib);
+            if (classifier == null || !lib.has("downloads")) continue;
+            JsonObject classifiers = lib.getAsJsonObject("downloads").getAsJsonObject("classifiers");
+            if (classifiers == null || !classifiers.has(classifier)) continue;
+            JsonObject download = classifiers.getAsJsonObject(classifier);
+
+            List<String> excludes = new ArrayList<>();
+            if (lib.has("extract") && lib.getAsJsonObject("extract").has("exclude")) {
+                for (JsonElement exclude : lib.getAsJsonObject("extract").getAsJsonArray("exclude")) {
+                    excludes.add(exclude.getAsString());
+                }
+            }
+            natives.add(new Natives(new URL(download.get("url").getAsString()), download.get("size").getAsLong(),
+                    HashValue.parse(download.get("sha1").getAsString()), excludes));
+        }
+        return natives;
+    }
+
+    /**
+     * Gets the classifier of a library's natives for this platform, if it has any.
+     */
+    @Nullable
+    private static String getNativesClassifier(JsonObject lib) {
+        if (!lib.has("natives")) return null;
+        JsonElement classifier = lib.getAsJsonObject("natives").get(Util.getOS());
+        if (classifier == null) return null;
+        // Some older libraries have separate natives for 32 and 64 bit
+        return classifier.getAsString().replace("${arch}", System.getProperty("os.arch").contains("64") ? "64" : "32");
     }
 
     private boolean isLibraryAllowed(JsonObject lib) {
@@ -183,38 +407,268 @@ public class MCLauncherArtifactProvider extends CustomRepository.ArtifactProvide
         return true;
     }
 
-    private boolean isServerEntryValid(ZipEntry entry) {
-        if (entry.isDirectory()) return false;
-        String name = entry.getName();
-        return !name.startsWith("org/bouncycastle/") && !name.startsWith("org/bouncycastle/") && !name.startsWith("org/apache/")
-                && !name.startsWith("com/google/") && !name.startsWith("com/mojang/authlib/") && !name.startsWith("com/mojang/util/")
-                && !name.startsWith("gnu/trove/") && !name.startsWith("io/netty/") && !name.startsWith("javax/annotation/")
-                && !name.startsWith("argo/") && !name.startsWith("it/unimi/dsi/fastutil/");
+    private boolean isServerEntryValid(String name, PrefixMatcher excluded) {
+        // The filtered jar has never contained directories or the vanilla manifest
+        if (name.endsWith("/") || name.equalsIgnoreCase(JarFile.MANIFEST_NAME)) return false;
+        return !excluded.matches(name);
+    }
+
+    /**
+     * Gets the entry prefixes to leave out of a pure server jar, sorted.<br/>
+     * They're only worked out once per jar, by whichever thread asks first, while the others wait for it.
+     */
+    private List<String> getServerExclusions(PureServer server) throws IOException {
+        CompletableFuture<List<String>> future = new CompletableFuture<>();
+        CompletableFuture<List<String>> existing = serverExclusionsByKey.putIfAbsent(server.key, future);
+        if (existing != null) return Util.join(existing);
+
+        try {
+            Set<String> prefixes = new TreeSet<>(server.configured != null ? server.configured
+                    : getLibraryPackages(server.version, server.manifest, server.legacy));
+            prefixes.addAll(server.extra);
+            future.complete(new ArrayList<>(prefixes));
+        } catch (IOException | RuntimeException ex) {
+            // Let whoever is waiting on them know, and let the next caller try again
+            serverExclusionsByKey.remove(server.key, future);
+            future.completeExceptionally(ex);
+        }
+        return Util.join(future);
     }
 
-    private JsonObject getManifest(String version) {
-        JsonObject versionManifest = manifests.getIfPresent(version);
+    /**
+     * Whether the libraries of a version couldn't be looked at recently, so its pure server jar
+     * leaves out the packages the server jar has historically bundled instead.
+     */
+    private boolean isLibraryFallbackActive(String version) throws IOException {
+        File fallback = getLibraryPackagesFile(version, "fallback");
+        return !getLibraryPackagesFile(version, "txt").exists() && fallback.exists()
+                && System.currentTimeMillis() - fallback.lastModified() < FALLBACK_PERIOD;
+    }
+
+    private File getLibraryPackagesFile(String version, String extension) throws IOException {
+        String key = HashUtil.createHash(getVersions().get(version), "SHA1").asZeroPaddedHexString(40);
+        return new File(cacheDir, "server-packages/" + key + "." + extension);
+    }
+
+    /**
+     * Gets the packages of every library in a version manifest, which the server jar bundles.<br/>
+     * Working these out means going through the library jars, so the result is kept on disk. Libraries are looked
+     * at regardless of their OS rules, so the result is the same no matter which OS works it out.<br/>
+     * If the libraries can't be downloaded, this fails, and the pure server jars produced over the next while fall
+     * back to the packages the server jar has historically bundled. Falling back right away would store that jar
+     * under the key of the real one.
+     *
+     * @param legacy Whether the fallback was already in effect when the pure server jar was identified.
+     */
+    private Collection<String> getLibraryPackages(String version, JsonObject manifest, boolean legacy) throws IOException {
+        if (legacy) return LEGACY_SERVER_EXCLUSIONS;
+        File file = getLibraryPackagesFile(version, "txt");
+        File fallback = getLibraryPackagesFile(version, "fallback");
+        try {
+            if (file.exists()) return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+
+            List<CompletableFuture<Set<String>>> futures = new ArrayList<>();
+            for (JsonElement libElement : manifest.getAsJsonArray("libraries")) {
+                JsonObject lib = libElement.getAsJsonObject();
+                if (!lib.has("downloads") || !lib.getAsJsonObject("downloads").has("artifact")) continue;
+                JsonObject artifact = lib.getAsJsonObject("downloads").getAsJsonObject("artifact");
+                URL libURL = new URL(artifact.get("url").getAsString());
+                long size = artifact.get("size").getAsLong();
+                HashValue sha1 = HashValue.parse(artifact.get("sha1").getAsString());
+                futures.add(Util.supplyAsync(() -> getPackages(libURL, size, sha1), CustomRepository.getExecutor()));
+            }
+            Set<String> packages = new TreeSet<>();
+            for (CompletableFuture<Set<String>> future : futures) {
+                packages.addAll(Util.join(future));
+            }
+
+            file.getParentFile().mkdirs();
+            File tmp = File.createTempFile("packages", ".tmp", file.getParentFile());
+            Files.write(tmp.toPath(), packages, StandardCharsets.UTF_8);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            fallback.delete();
+            return packages;
+        } catch (IOException | UncheckedIOException ex) {
+            LOGGER.warn("Could not look at the libraries of Minecraft {}, so its pure server jar leaves out the packages it has "
+                    + "historically bundled instead from the next attempt on. This is retried in a day, or once the cache in {} is deleted.",
+                    version, fallback.getParentFile(), ex);
+            try {
+                fallback.getParentFile().mkdirs();
+                Files.write(fallback.toPath(), LEGACY_SERVER_EXCLUSIONS, StandardCharsets.UTF_8);
+            } catch (IOException ignored) {
+                // Only means the libraries are tried again next time
+            }
+            throw new IOException("Could not look at the libraries of Minecraft " + version + " to produce its pure server jar", ex);
+        }
+    }
+
+    /**
+     * Gets the packages a library jar has entries in, other than {@code META-INF}.<br/>
+     * The jar is read through the artifact store, where the libraries repository serves it from later on.
+     */
+    private Set<String> getPackages(URL url, long size, HashValue sha1) throws IOException {
+        ArtifactIdentifier identifier = MavenArtifactPath.parse(url.getPath());
+        return readStored(identifier, sha1, () -> libraryMirrors.download(url, size, sha1), jar -> {
+            Set<String> packages = new HashSet<>();
+            try (ZipFile zip = new ZipFile(jar)) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    int slash = name.lastIndexOf('/');
+                    if (slash == -1 || name.startsWith("META-INF/")) continue;
+                    packages.add(name.substring(0, slash + 1));
+                }
+            }
+            return packages;
+        });
+    }
+
+    @Nullable
+    private JsonObject getManifest(String version) throws IOException {
+        JsonObject versionManifest = manifests.get(version);
         if (versionManifest != null) return versionManifest;
 
-        JsonObject manifest = manifests.getIfPresent(Constants.MC_VERSION_MANIFEST);
-        if (manifest == null) {
-            manifest = Util.readJSON(Constants.MC_VERSION_MANIFEST);
-            manifests.put("", manifest);
+        String url = getVersions().get(version);
+        if (url == null) return null;
+
+        synchronized (manifests) {
+            versionManifest = manifests.get(version);
+            if (versionManifest != null) return versionManifest;
+            // A version's manifest never changes without its URL changing, so there's no need to revalidate it
+            versionManifest = cache.get(url, false);
+            if (versionManifest == null) return null;
+            indexLibraries(versionManifest);
+            manifests.put(version, versionManifest);
+            return versionManifest;
         }
+    }
 
-        for (JsonElement e : manifest.getAsJsonArray("versions")) {
-            String v = e.getAsJsonObject().get("id").getAsString();
-            if (v.equals(version)) {
-                versionManifest = Util.readJSON(e.getAsJsonObject().get("url").getAsString());
-                manifests.put(version, versionManifest);
-                return versionManifest;
+    /**
+     * Gets the manifest URL of every known version, revalidating the top-level manifest the first time it's needed.<br/>
+     * Only a manifest that was actually read is remembered, so a failure is reported again and retried by the next request.
+     */
+    private Map<String, String> getVersions() throws IOException {
+        Map<String, String> versions = this.versions;
+        if (versions != null) return versions;
+        synchronized (this) {
+            if (this.versions != null) return this.versions;
+            JsonObject manifest = cache.get(Constants.MC_VERSION_MANIFEST, true);
+            if (manifest == null) throw new IOException("Could not find the Minecraft version manifest at " + Constants.MC_VERSION_MANIFEST);
+            versions = new HashMap<>();
+            for (JsonElement e : manifest.getAsJsonArray("versions")) {
+                JsonObject v = e.getAsJsonObject();
+                versions.put(v.get("id").getAsString(), v.get("url").getAsString());
             }
+            return this.versions = versions;
         }
-        return null;
     }
 
-    private String getHashID(ArtifactIdentifier identifier) {
-        return identifier.getModuleVersionIdentifier().getVersion() + ":" + identifier.getClassifier();
+    /**
+     * Gets the download info (id, url, sha1 and size) of the asset index a version uses.
+     */
+    @Nullable
+    public JsonObject getAssetIndexDownload(String version) throws IOException {
+        JsonObject manifest = getManifest(version);
+        if (manifest == null || !manifest.has("assetIndex")) return null;
+        return manifest.getAsJsonObject("assetIndex");
+    }
+
+    /**
+     * Gets the download info (url, sha1 and size) of a library from any of the version manifests
+     * that were loaded so far.
+     *
+     * @param coordinates The library's {@code group:name:version[:classifier]} coordinates.
+     */
+    @Nullable
+    public JsonObject getLibraryDownload(String coordinates) {
+        return libraries.get(coordinates);
+    }
+
+    private void indexLibraries(JsonObject manifest) {
+        for (JsonElement libElement : manifest.getAsJsonArray("libraries")) {
+            JsonObject lib = libElement.getAsJsonObject();
+            if (!lib.has("downloads")) continue;
+
+            String libName = lib.get("name").getAsString();
+            JsonObject downloads = lib.getAsJsonObject("downloads");
+            if (downloads.has("artifact")) {
+                libraries.put(libName, downloads.getAsJsonObject("artifact"));
+            }
+            if (downloads.has("classifiers")) {
+                for (Map.Entry<String, JsonElement> classifier : downloads.getAsJsonObject("classifiers").entrySet()) {
+                    libraries.put(libName + ":" + classifier.getKey(), classifier.getValue().getAsJsonObject());
+                }
+            }
+        }
+    }
+
+    /**
+     * A jar containing native libraries, which need to be extracted before they can be loaded.
+     */
+    public static class Natives {
+
+        private final URL url;
+        private final long size;
+        private final HashValue sha1;
+        private final List<String> excludes;
+
+        private Natives(URL url, long size, HashValue sha1, List<String> excludes) {
+            this.url = url;
+            this.size = size;
+            this.sha1 = sha1;
+            this.excludes = excludes;
+        }
+
+        public URL getURL() {
+            return url;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public HashValue getSha1() {
+            return sha1;
+        }
+
+        /**
+         * Gets the prefixes of the entries that must not be extracted.
+         */
+        public List<String> getExcludes() {
+            return excludes;
+        }
+
+    }
+
+    /**
+     * Where to get a vanilla server jar from, and how to work out what to leave out of it.
+     */
+    private static class PureServer {
+
+        private final String version;
+        private final JsonObject manifest;
+        @Nullable
+        private final List<String> configured;
+        private final List<String> extra;
+        private final boolean legacy;
+        private final URL url;
+        private final long size;
+        private final HashValue hash;
+        private final HashValue key;
+
+        private PureServer(String version, JsonObject manifest, @Nullable List<String> configured, List<String> extra, boolean legacy,
+                           URL url, long size, HashValue hash, HashValue key) {
+            this.version = version;
+            this.manifest = manifest;
+            this.configured = configured;
+            this.extra = extra;
+            this.legacy = legacy;
+            this.url = url;
+            this.size = size;
+            this.hash = hash;
+            this.key = key;
+        }
+
     }
 
 }
@@ -0,0 +1,101 @@
+package net.minecraftforge.gradle.shared.impl;
+
+import net.minecraftforge.gradle.shared.repo.ArtifactMetadata;
+import net.minecraftforge.gradle.shared.repo.CustomRepository;
+import net.minecraftforge.gradle.shared.repo.MavenArtifactPath;
+import net.minecraftforge.gradle.shared.repo.StreamedResource;
+import net.minecraftforge.gradle.shared.util.HttpFetcher;
+import net.minecraftforge.gradle.shared.util.IOSupplier;
+import net.minecraftforge.gradle.shared.util.MirrorSet;
+import org.gradle.api.artifacts.ArtifactIdentifier;
+import org.gradle.internal.hash.HashValue;
+import org.gradle.internal.impldep.com.google.gson.JsonObject;
+import org.gradle.internal.impldep.org.apache.commons.io.IOUtils;
+
+import javax.annotation.Nullable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An artifact provider for the libraries Minecraft depends on.<br/>
+ * Libraries listed in a version manifest are served with the hash and size from the manifest, so they
+ * can be kept in the artifact store. Anything else is looked up in the remote maven repository.
+ */
+public class MCLibrariesArtifactProvider extends CustomRepository.ArtifactProvider.Simple {
+
+    private final MCLauncherArtifactProvider launcher;
+    private final MirrorSet mirrors;
+
+    public MCLibrariesArtifactProvider(MCLauncherArtifactProvider launcher, MirrorSet mirrors) {
+        this.launcher = launcher;
+        this.mirrors = mirrors;
+        addExtensionProvider("jar", this::getLibrary);
+        addMetadataProvider("jar", this::getLibraryMetadata);
+    }
+
+    @Override
+    public boolean supportsPOMs() {
+        return false;
+    }
+
+    private IOSupplier<StreamedResource> getLibrary(ArtifactIdentifier identifier) throws IOException {
+        JsonObject download = launcher.getLibraryDownload(getCoordinates(identifier));
+        if (download != null) {
+            URL url = new URL(download.get("url").getAsString());
+            long size = download.get("size").getAsLong();
+            HashValue hash = HashValue.parse(download.get("sha1").getAsString());
+            return () -> StreamedResource.ofURL(url, size, hash).withMirrors(mirrors);
+        }
+
+        // Not a library we know of, so fall back to the repository's own checksum
+        URL url = new URL(mirrors.getPrimary() + MavenArtifactPath.format(identifier));
+        HashValue hash = getRemoteHash(url);
+        if (hash == null) return null;
+        return () -> StreamedResource.ofURL(url, -1, hash).withMirrors(mirrors);
+    }
+
+    private ArtifactMetadata getLibraryMetadata(ArtifactIdentifier identifier) {
+        JsonObject download = launcher.getLibraryDownload(getCoordinates(identifier));
+        if (download == null) return null;
+        return new ArtifactMetadata(download.get("size").getAsLong(), HashValue.parse(download.get("sha1").getAsString()));
+    }
+
+    private static String getCoordinates(ArtifactIdentifier identifier) {
+        String coordinates = identifier.getModuleVersionIdentifier().getGroup() + ":"
+                + identifier.getModuleVersionIdentifier().getName() + ":"
+                + identifier.getModuleVersionIdentifier().getVersion();
+        return identifier.getClassifier() == null ? coordinates : coordinates + ":" + identifier.getClassifier();
+    }
+
+    /**
+     * Reads the {@code .sha1} file published next to an artifact.<br/>
+     * Only a missing checksum means the artifact is missing. Anything else, such as the network being down,
+     * is thrown, so it isn't remembered as a miss.
+     *
+     * @return The hash, or {@code null} if the artifact does not exist or has no checksum.
+     */
+    @Nullable
+    private HashValue getRemoteHash(URL url) throws IOException {
+        String hash;
+        try {
+            hash = mirrors.fetch(new URL(url + ".sha1"), sha1URL -> {
+                try (InputStream in = HttpFetcher.openStream(sha1URL)) {
+                    return IOUtils.toString(in, StandardCharsets.UTF_8).trim();
+                }
+            }, $ -> {
+            });
+        } catch (FileNotFoundException ex) {
+            return null;
+        }
+        int space = hash.indexOf(' ');
+        try {
+            return HashValue.parse(space == -1 ? hash : hash.substring(0, space));
+        } catch (RuntimeException ex) {
+            throw new IOException("Invalid checksum for " + url + ": " + hash, ex);
+        }
+    }
+
+}
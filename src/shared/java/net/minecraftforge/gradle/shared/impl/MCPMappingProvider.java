@@ -1,25 +1,38 @@
 package net.minecraftforge.gradle.shared.impl;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
 import com.google.common.collect.ImmutableSet;
 import net.minecraftforge.gradle.api.mapping.MappingEntry;
 import net.minecraftforge.gradle.api.mapping.MappingProvider;
 import net.minecraftforge.gradle.api.mapping.MappingVersion;
 import net.minecraftforge.gradle.shared.Constants;
+import net.minecraftforge.gradle.shared.mappings.MappingTable;
+import net.minecraftforge.gradle.shared.mappings.SrgReader;
+import net.minecraftforge.gradle.shared.mappings.SymbolTable;
+import net.minecraftforge.gradle.shared.repo.CustomRepository;
 import net.minecraftforge.gradle.shared.util.Util;
 import org.gradle.api.artifacts.dsl.RepositoryHandler;
+import org.gradle.internal.hash.HashUtil;
 import org.gradle.internal.impldep.com.beust.jcommander.internal.Maps;
-import org.gradle.internal.impldep.org.apache.commons.io.FileUtils;
+
+import javax.annotation.Nullable;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * {@link MappingProvider} implementation for MCP mappings.<br/>
@@ -35,7 +48,23 @@ public class MCPMappingProvider implements MappingProvider {
     private static final Object SRG_HANDLE = new Object();
     private static final Object CSV_HANDLE = new Object();
 
-    private final Map<MappingVersion, MappingData> cachedData = new HashMap<>();
+    // Mappings that were loaded or are being loaded, so each version is only loaded once
+    private final Map<MappingVersion, CompletableFuture<MappingTable>> cachedData = new ConcurrentHashMap<>();
+    @Nullable
+    private File cacheDir;
+
+    /**
+     * Sets the directory parsed mappings are kept in, so they can be loaded without parsing them again
+     * in later builds. If not set, mappings are parsed once per provider.
+     */
+    public void setCacheDir(@Nullable File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    @Nullable
+    public File getCacheDir() {
+        return cacheDir;
+    }
 
     @Override
     public String getName() {
@@ -54,52 +83,44 @@ public class MCPMappingProvider implements MappingProvider {
 
     @Override
     public Map<MappingEntry, MappingEntry> getMapping(MappingVersion version, Function<Object, File> dependencyResolver) {
-        File unzippedSrgs = Util.unzip(dependencyResolver.apply(SRG_HANDLE));
-        File unzippedCSVs = Util.unzip(dependencyResolver.apply(CSV_HANDLE));
-
-        MappingData data = cachedData.computeIfAbsent(version, $ -> new MappingData(unzippedSrgs, unzippedCSVs));
+        MappingTable table;
+        try {
+            table = Util.join(getTable(version, dependencyResolver));
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
         Map<MappingEntry, MappingEntry> mappings = new LinkedHashMap<>();
 
-        switch (version.getMapping()) {
-            case "notch-srg":
-                mappings.putAll(data.notchSrgPackages);
-                mappings.putAll(data.notchSrgClasses);
-                mappings.putAll(data.notchSrgFields);
-                mappings.putAll(data.notchSrgMethods);
-                break;
-            case "srg-notch":
-                mappings.putAll(data.notchSrgPackages.inverse());
-                mappings.putAll(data.notchSrgClasses.inverse());
-                mappings.putAll(data.notchSrgFields.inverse());
-                mappings.putAll(data.notchSrgMethods.inverse());
-                break;
-            case "srg-mcp":
-                data.notchSrgClasses.values().forEach(e -> mappings.put(e, e));
-                mappings.putAll(data.srgMCPFields);
-                mappings.putAll(data.srgMCPMethods);
-                break;
-            case "mcp-srg":
-                data.notchSrgClasses.values().forEach(e -> mappings.put(e, e));
-                mappings.putAll(data.srgMCPFields.inverse());
-                mappings.putAll(data.srgMCPMethods.inverse());
-                break;
-            case "notch-mcp":
-                mappings.putAll(data.notchSrgPackages);
-                mappings.putAll(data.notchSrgClasses);
-                data.notchSrgFields.forEach((a, b) -> mappings.put(a, data.srgMCPFields.get(b)));
-                data.notchSrgMethods.forEach((a, b) -> mappings.put(a, data.srgMCPMethods.get(b)));
-                break;
-            case "mcp-notch":
-                mappings.putAll(data.notchSrgPackages.inverse());
-                mappings.putAll(data.notchSrgClasses.inverse());
-                data.notchSrgFields.forEach((a, b) -> mappings.put(data.srgMCPFields.get(b), a));
-                data.notchSrgMethods.forEach((a, b) -> mappings.put(data.srgMCPMethods.get(b), a));
-                break;
-        }
+        String[] namings = version.getMapping().split("-");
+        MappingTable.Naming from = MappingTable.Naming.valueOf(namings[0].toUpperCase(Locale.ROOT));
+        MappingTable.Naming to = MappingTable.Naming.valueOf(namings[1].toUpperCase(Locale.ROOT));
+        table.forEach(from, to, mappings::put);
 
         return mappings;
     }
 
+    /**
+     * Gets the mappings of a version, loading them if no other thread is already doing so.
+     */
+    private CompletableFuture<MappingTable> getTable(MappingVersion version, Function<Object, File> dependencyResolver) {
+        CompletableFuture<MappingTable> future = new CompletableFuture<>();
+        CompletableFuture<MappingTable> existing = cachedData.putIfAbsent(version, future);
+        if (existing != null) return existing;
+
+        // No other thread is loading these mappings and we've claimed them, so let's go!
+        try {
+            // Resolve both zips at the same time, they come from different artifacts
+            CompletableFuture<File> csvZip = CompletableFuture.supplyAsync(() -> dependencyResolver.apply(CSV_HANDLE), CustomRepository.getExecutor());
+            File srgZip = dependencyResolver.apply(SRG_HANDLE);
+            future.complete(loadMappings(srgZip, Util.join(csvZip)));
+        } catch (IOException | RuntimeException ex) {
+            // Let whoever is waiting on them know, and let the next caller try again
+            cachedData.remove(version, future);
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
     @Override
     public Map<Object, Object> getDependencies(MappingVersion version) {
         Map<Object, Object> dependencies = new HashMap<>();
@@ -119,67 +140,86 @@ public class MCPMappingProvider implements MappingProvider {
         return dependencies;
     }
 
-    private class MappingData {
-
-        private final BiMap<MappingEntry, MappingEntry> notchSrgPackages = HashBiMap.create();
-        private final BiMap<MappingEntry, MappingEntry> notchSrgClasses = HashBiMap.create();
-        private final BiMap<MappingEntry, MappingEntry> notchSrgFields = HashBiMap.create();
-        private final BiMap<MappingEntry, MappingEntry> notchSrgMethods = HashBiMap.create();
-
-        private final BiMap<MappingEntry, MappingEntry> srgMCPFields = HashBiMap.create();
-        private final BiMap<MappingEntry, MappingEntry> srgMCPMethods = HashBiMap.create();
+    /**
+     * Loads the mappings from the binary cache, parsing them and filling the cache if they aren't in it yet.<br/>
+     * Entries are keyed by the SHA-1 of both zips, so a new snapshot or SRG release gets an entry of its own.
+     */
+    private MappingTable loadMappings(File srgZip, File csvZip) throws IOException {
+        if (cacheDir == null) return readMappings(srgZip, csvZip);
+
+        String key = HashUtil.createHash(HashUtil.sha1(srgZip).asZeroPaddedHexString(40) + ":"
+                + HashUtil.sha1(csvZip).asZeroPaddedHexString(40), "SHA1").asZeroPaddedHexString(40);
+        File file = new File(cacheDir, key + ".bin");
+        if (file.exists()) {
+            try {
+                return MappingTable.read(file);
+            } catch (IOException ex) {
+                // Corrupt or from an older version, it will be parsed again
+            }
+        }
 
-        private MappingData(File unzippedSrgs, File unzippedCSVs) {
-            this(
-                    new File(unzippedSrgs, "joined.srg"),
-                    new File(unzippedCSVs, "fields.csv"),
-                    new File(unzippedCSVs, "methods.csv")
-            );
+        MappingTable table = readMappings(srgZip, csvZip);
+        try {
+            table.write(file);
+        } catch (IOException ex) {
+            // Not being able to cache them only means they'll be parsed again next time
         }
+        return table;
+    }
 
-        private MappingData(File joinedSrg, File fieldsCSV, File methodsCSV) {
-            List<String> srgLines;
-            Map<String, String> fieldMappings, methodMappings;
+    /**
+     * Reads the mappings straight out of the SRG and CSV zips, without extracting them anywhere.<br/>
+     * The SRG file and both CSV files are parsed in parallel, and only joined once all of them have been read.
+     */
+    private static MappingTable readMappings(File srgZip, File csvZip) throws IOException {
+        CompletableFuture<Map<String, String>> fieldMappings = Util.supplyAsync(() -> readNames(csvZip, "fields.csv"), CustomRepository.getExecutor());
+        CompletableFuture<Map<String, String>> methodMappings = Util.supplyAsync(() -> readNames(csvZip, "methods.csv"), CustomRepository.getExecutor());
+
+        SymbolTable symbols = new SymbolTable(65536);
+        MappingTable table = new MappingTable(symbols);
+        try (ZipFile srgs = new ZipFile(srgZip);
+             InputStream in = getEntry(srgs, "joined.srg")) {
+            SrgReader.read(in, symbols, new SrgReader.Visitor() {
+                @Override
+                public void visitPackage(int notch, int srg) {
+                    table.addPackage(notch, srg);
+                }
 
-            try {
-                srgLines = FileUtils.readLines(joinedSrg);
-                fieldMappings = Util.readCSV(fieldsCSV, "searge", "name");
-                methodMappings = Util.readCSV(methodsCSV, "searge", "name");
-            } catch (IOException ex) {
-                throw new RuntimeException(ex);
-            }
+                @Override
+                public void visitClass(int notch, int srg) {
+                    table.addClass(notch, srg);
+                }
 
-            for (String line : srgLines) {
-                String[] split = line.split(" ");
-                switch (split[0]) {
-                    case "PK:": {
-                        notchSrgPackages.put(MappingEntry.forPackage(split[1]), MappingEntry.forPackage(split[2]));
-                        break;
-                    }
-                    case "CL:": {
-                        notchSrgClasses.put(MappingEntry.forClass(split[1]), MappingEntry.forClass(split[2]));
-                        break;
-                    }
-                    case "FD:": {
-                        MappingEntry.Field mapping = MappingEntry.forFullyQualifiedField(split[2]);
-                        String srgName = fieldMappings.get(mapping.getName());
-                        if (srgName == null) srgName = mapping.getName();
-                        notchSrgFields.put(MappingEntry.forFullyQualifiedField(split[1]), mapping);
-                        srgMCPFields.put(mapping, MappingEntry.forField(mapping.getOwner(), srgName));
-                        break;
-                    }
-                    case "MD:": {
-                        MappingEntry.Method mapping = MappingEntry.forFullyQualifiedMethod(split[3], split[4]);
-                        String srgName = methodMappings.get(mapping.getName());
-                        if (srgName == null) srgName = mapping.getName();
-                        notchSrgMethods.put(MappingEntry.forFullyQualifiedMethod(split[1], split[2]), mapping);
-                        srgMCPMethods.put(mapping, MappingEntry.forMethod(mapping.getOwner(), srgName, mapping.getDescriptor()));
-                        break;
-                    }
+                @Override
+                public void visitField(int notchOwner, int notchName, int srgOwner, int srgName) {
+                    table.addField(notchOwner, notchName, srgOwner, srgName, srgName); // MCP names are filled in later
                 }
-            }
+
+                @Override
+                public void visitMethod(int notchOwner, int notchName, int notchDesc, int srgOwner, int srgName, int srgDesc) {
+                    table.addMethod(notchOwner, notchName, notchDesc, srgOwner, srgName, srgDesc, srgName);
+                }
+            });
         }
 
+        table.applyMCPNames(Util.join(fieldMappings), Util.join(methodMappings));
+        return table;
+    }
+
+    /**
+     * Reads the SRG name -> MCP name columns of one of the CSVs in the given zip.
+     */
+    private static Map<String, String> readNames(File csvZip, String name) throws IOException {
+        try (ZipFile csvs = new ZipFile(csvZip);
+             Reader reader = new InputStreamReader(getEntry(csvs, name), StandardCharsets.UTF_8)) {
+            return Util.readCSV(reader, "searge", "name");
+        }
+    }
+
+    private static InputStream getEntry(ZipFile zip, String name) throws IOException {
+        ZipEntry entry = zip.getEntry(name);
+        if (entry == null) throw new FileNotFoundException(name + " not found in " + zip.getName());
+        return zip.getInputStream(entry);
     }
 
 }
@@ -0,0 +1,260 @@
+package net.minecraftforge.gradle.shared.mappings;
+
+import net.minecraftforge.gradle.api.mapping.MappingEntry;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Notch, SRG and MCP names of every package, class, field and method in a mapping set.<br/>
+ * Names are interned into a {@link SymbolTable} and each mapping is a row of symbol IDs in a flat int array,
+ * so a full set of mappings costs a few int arrays rather than millions of objects.
+ * MCP only renames fields and methods, so packages and classes have the same SRG and MCP names.
+ */
+public final class MappingTable {
+
+    /**
+     * A set of names a mapping can go from or to.
+     */
+    public enum Naming {
+        NOTCH, SRG, MCP
+    }
+
+    // "FGMT", then the version of the binary format
+    private static final int MAGIC = 0x46474D54;
+    private static final int FORMAT = 1;
+
+    // Package and class rows: notch, srg
+    private static final int CLASS_STRIDE = 2;
+    // Field rows: notch owner, notch name, srg owner, srg name, mcp name
+    private static final int FIELD_STRIDE = 5;
+    // Method rows: notch owner, notch name, notch desc, srg owner, srg name, srg desc, mcp name
+    private static final int METHOD_STRIDE = 7;
+
+    private final SymbolTable symbols;
+    private int[] packages = new int[256];
+    private int[] classes = new int[8192];
+    private int[] fields = new int[65536];
+    private int[] methods = new int[131072];
+    private int packageCount, classCount, fieldCount, methodCount;
+
+    public MappingTable(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public void addPackage(int notch, int srg) {
+        packages = ensureCapacity(packages, (packageCount + 1) * CLASS_STRIDE);
+        int pos = packageCount++ * CLASS_STRIDE;
+        packages[pos] = notch;
+        packages[pos + 1] = srg;
+    }
+
+    public void addClass(int notch, int srg) {
+        classes = ensureCapacity(classes, (classCount + 1) * CLASS_STRIDE);
+        int pos = classCount++ * CLASS_STRIDE;
+        classes[pos] = notch;
+        classes[pos + 1] = srg;
+    }
+
+    public void addField(int notchOwner, int notchName, int srgOwner, int srgName, int mcpName) {
+        fields = ensureCapacity(fields, (fieldCount + 1) * FIELD_STRIDE);
+        int pos = fieldCount++ * FIELD_STRIDE;
+        fields[pos] = notchOwner;
+        fields[pos + 1] = notchName;
+        fields[pos + 2] = srgOwner;
+        fields[pos + 3] = srgName;
+        fields[pos + 4] = mcpName;
+    }
+
+    public void addMethod(int notchOwner, int notchName, int notchDesc, int srgOwner, int srgName, int srgDesc, int mcpName) {
+        methods = ensureCapacity(methods, (methodCount + 1) * METHOD_STRIDE);
+        int pos = methodCount++ * METHOD_STRIDE;
+        methods[pos] = notchOwner;
+        methods[pos + 1] = notchName;
+        methods[pos + 2] = notchDesc;
+        methods[pos + 3] = srgOwner;
+        methods[pos + 4] = srgName;
+        methods[pos + 5] = srgDesc;
+        methods[pos + 6] = mcpName;
+    }
+
+    /**
+     * Gives fields and methods their MCP names, looked up by SRG name. Members that aren't listed keep their SRG name.<br/>
+     * Each listed name is looked up in the symbol table once, rather than once per member that uses it.
+     */
+    public void applyMCPNames(Map<String, String> fieldNames, Map<String, String> methodNames) {
+        int[] fieldRenames = getRenames(fieldNames);
+        for (int row = 0; row < fieldCount; row++) {
+            int pos = row * FIELD_STRIDE;
+            int srgName = fields[pos + 3];
+            fields[pos + 4] = srgName < fieldRenames.length && fieldRenames[srgName] != -1 ? fieldRenames[srgName] : srgName;
+        }
+        int[] methodRenames = getRenames(methodNames);
+        for (int row = 0; row < methodCount; row++) {
+            int pos = row * METHOD_STRIDE;
+            int srgName = methods[pos + 4];
+            methods[pos + 6] = srgName < methodRenames.length && methodRenames[srgName] != -1 ? methodRenames[srgName] : srgName;
+        }
+    }
+
+    /**
+     * Builds a symbol ID -> symbol ID lookup out of a name -> name map, skipping names that aren't used.
+     */
+    private int[] getRenames(Map<String, String> names) {
+        int[] renames = new int[symbols.size()];
+        Arrays.fill(renames, -1);
+        for (Map.Entry<String, String> name : names.entrySet()) {
+            int id = symbols.find(name.getKey());
+            if (id != -1 && id < renames.length) renames[id] = symbols.intern(name.getValue());
+        }
+        return renames;
+    }
+
+    /**
+     * Visits every mapping from one naming to another, in the order packages, classes, fields and methods.<br/>
+     * Packages are only visited when going to or from notch names, since they aren't renamed otherwise.
+     */
+    public void forEach(Naming from, Naming to, BiConsumer<MappingEntry, MappingEntry> consumer) {
+        if (from == Naming.NOTCH || to == Naming.NOTCH) {
+            for (int row = 0; row < packageCount; row++) {
+                int pos = row * CLASS_STRIDE;
+                consumer.accept(MappingEntry.forPackage(symbols.get(packages[pos + classColumn(from)])),
+                        MappingEntry.forPackage(symbols.get(packages[pos + classColumn(to)])));
+            }
+        }
+        for (int row = 0; row < classCount; row++) {
+            int pos = row * CLASS_STRIDE;
+            consumer.accept(MappingEntry.forClass(symbols.get(classes[pos + classColumn(from)])),
+                    MappingEntry.forClass(symbols.get(classes[pos + classColumn(to)])));
+        }
+        for (int row = 0; row < fieldCount; row++) {
+            int pos = row * FIELD_STRIDE;
+            consumer.accept(getField(pos, from), getField(pos, to));
+        }
+        for (int row = 0; row < methodCount; row++) {
+            int pos = row * METHOD_STRIDE;
+            consumer.accept(getMethod(pos, from), getMethod(pos, to));
+        }
+    }
+
+    private MappingEntry.Field getField(int pos, Naming naming) {
+        if (naming == Naming.NOTCH) {
+            return MappingEntry.forField(symbols.get(fields[pos]), symbols.get(fields[pos + 1]));
+        }
+        return MappingEntry.forField(symbols.get(fields[pos + 2]), symbols.get(fields[naming == Naming.SRG ? pos + 3 : pos + 4]));
+    }
+
+    private MappingEntry.Method getMethod(int pos, Naming naming) {
+        if (naming == Naming.NOTCH) {
+            return MappingEntry.forMethod(symbols.get(methods[pos]), symbols.get(methods[pos + 1]), symbols.get(methods[pos + 2]));
+        }
+        return MappingEntry.forMethod(symbols.get(methods[pos + 3]), symbols.get(methods[naming == Naming.SRG ? pos + 4 : pos + 6]),
+                symbols.get(methods[pos + 5]));
+    }
+
+    /**
+     * Writes the table to a binary file: a header, the symbol table's string pool and index arrays, and then the row
+     * counts and rows. Everything is an int except the string pool, so it can be read back with bulk copies.<br/>
+     * The file is written to a temporary file first and then moved into place, so readers never see half of it.
+     */
+    public void write(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp.toPath()), 65536))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                symbols.write(out);
+                out.writeInt(packageCount);
+                out.writeInt(classCount);
+                out.writeInt(fieldCount);
+                out.writeInt(methodCount);
+                writeInts(out, packages, packageCount * CLASS_STRIDE);
+                writeInts(out, classes, classCount * CLASS_STRIDE);
+                writeInts(out, fields, fieldCount * FIELD_STRIDE);
+                writeInts(out, methods, methodCount * METHOD_STRIDE);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Reads a table written by {@link #write(File)}, memory mapping the file so it's read with bulk copies
+     * rather than parsed.
+     *
+     * @throws IOException If the file can't be read, was written in another format or is corrupt.
+     */
+    public static MappingTable read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT) {
+                throw new IOException("Unknown mapping table format in " + file);
+            }
+
+            MappingTable table = new MappingTable(SymbolTable.read(buffer));
+            table.packageCount = buffer.getInt();
+            table.classCount = buffer.getInt();
+            table.fieldCount = buffer.getInt();
+            table.methodCount = buffer.getInt();
+            table.packages = readInts(buffer, table.packageCount * CLASS_STRIDE);
+            table.classes = readInts(buffer, table.classCount * CLASS_STRIDE);
+            table.fields = readInts(buffer, table.fieldCount * FIELD_STRIDE);
+            table.methods = readInts(buffer, table.methodCount * METHOD_STRIDE);
+
+            // Every row has to point at a symbol, or the file doesn't belong with its symbol table
+            int size = table.symbols.size();
+            for (int[] rows : new int[][]{ table.packages, table.classes, table.fields, table.methods }) {
+                for (int id : rows) {
+                    if (id < 0 || id >= size) throw new IOException("Corrupt mapping table in " + file);
+                }
+            }
+            return table;
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new IOException("Corrupt mapping table in " + file, ex);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] array, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            out.writeInt(array[i]);
+        }
+    }
+
+    /**
+     * Bulk reads ints from a buffer, leaving it just past them.<br/>
+     * The length is checked against what's left first, so a corrupt one can't make us allocate more than the file holds.
+     */
+    static int[] readInts(ByteBuffer buffer, int length) {
+        if (length < 0 || length > buffer.remaining() / 4) throw new IllegalArgumentException("Invalid length: " + length);
+        int[] array = new int[length];
+        buffer.asIntBuffer().get(array);
+        buffer.position(buffer.position() + length * 4);
+        return array;
+    }
+
+    private static int classColumn(Naming naming) {
+        return naming == Naming.NOTCH ? 0 : 1;
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        return capacity <= array.length ? array : Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+
+}
@@ -21,10 +21,8 @@ import org.gradle.internal.Pair;
 import org.gradle.internal.hash.HashUtil;
 import org.gradle.internal.hash.HashValue;
 import org.gradle.internal.impldep.com.beust.jcommander.internal.Maps;
-import org.gradle.internal.impldep.org.apache.commons.io.IOUtils;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
@@ -37,20 +35,24 @@ import java.util.Set;
  */
 public class Remapper {
 
-    public static Pair<IOSupplier<byte[]>, HashValue> lazyRemapBytes(DependencyResolver dependencyResolver, MappingVersion mapping, File file) {
-        Pair<IOSupplier<File>, HashValue> tmp = lazyRemapTmp(dependencyResolver, mapping, file);
-        return Pair.of(() -> {
-            File tmpFile = tmp.getLeft().get();
-            FileInputStream fis = new FileInputStream(tmpFile);
-            byte[] bytes = IOUtils.toByteArray(fis);
-            fis.close();
-            tmpFile.delete();
-            return bytes;
-        }, tmp.getRight());
-    }
+    // Version of what remapping outputs, which is part of the hash identifying remapped jars.
+    // Bump it whenever the output changes, so older remapped jars aren't served from the store anymore
+    private static final int REMAP_FORMAT = 1;
 
+    /**
+     * Lazily remaps a file into a temporary file.<br/>
+     * The returned hash identifies the remapped output: it is derived from both the input file and the mapping.
+     */
     public static Pair<IOSupplier<File>, HashValue> lazyRemapTmp(DependencyResolver dependencyResolver, MappingVersion mapping, File file) {
         File mappingFile = dependencyResolver.resolveDependency(mapping.asMavenArtifactName()).iterator().next();
+        return lazyRemapTmp(mappingFile, file);
+    }
+
+    /**
+     * Lazily remaps a file into a temporary file, using an already resolved mapping file.
+     */
+    public static Pair<IOSupplier<File>, HashValue> lazyRemapTmp(File mappingFile, File file) {
+        HashValue hash = getRemappedHash(mappingFile, file);
         return Pair.of(() -> {
             File tmp = File.createTempFile("remap", null);
             Util.applySpecialSource(file, tmp, jar -> {
@@ -59,7 +61,15 @@ public class Remapper {
                 return createRemapper(Collections.singleton(mappingFile), inheritanceProvider);
             });
             return tmp;
-        }, HashUtil.sha1(mappingFile));
+        }, hash);
+    }
+
+    /**
+     * Gets the hash identifying the output of remapping a file, without remapping it.
+     */
+    public static HashValue getRemappedHash(File mappingFile, File file) {
+        return HashUtil.createHash("remap:" + REMAP_FORMAT + ":" + HashUtil.sha1(file).asHexString() + ":"
+                + HashUtil.sha1(mappingFile).asHexString(), "SHA1");
     }
 
     public static Set<File> remap(DependencyResolver dependencyResolver, MappingVersion mapping, Set<File> files) {
@@ -0,0 +1,124 @@
+package net.minecraftforge.gradle.shared.mappings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Single-pass reader for SRG files.<br/>
+ * Lines are tokenized straight from a byte buffer and every name is interned into a {@link SymbolTable}
+ * as it's found, so names that were seen before cost no allocations at all. Entries are handed to a
+ * {@link Visitor} as they are read.
+ */
+public final class SrgReader {
+
+    private static final int BUFFER_SIZE = 65536;
+    private static final int MAX_TOKENS = 5;
+
+    /**
+     * Receives the entries of an SRG file, as symbol IDs.
+     */
+    public interface Visitor {
+
+        void visitPackage(int notch, int srg);
+
+        void visitClass(int notch, int srg);
+
+        void visitField(int notchOwner, int notchName, int srgOwner, int srgName);
+
+        void visitMethod(int notchOwner, int notchName, int notchDesc, int srgOwner, int srgName, int srgDesc);
+
+    }
+
+    private final SymbolTable symbols;
+    private final Visitor visitor;
+    // Start and end of each token on the current line
+    private final int[] starts = new int[MAX_TOKENS];
+    private final int[] ends = new int[MAX_TOKENS];
+
+    private SrgReader(SymbolTable symbols, Visitor visitor) {
+        this.symbols = symbols;
+        this.visitor = visitor;
+    }
+
+    /**
+     * Reads an SRG file, interning its names into the given table. The stream is not closed.
+     */
+    public static void read(InputStream in, SymbolTable symbols, Visitor visitor) throws IOException {
+        new SrgReader(symbols, visitor).read(in);
+    }
+
+    private void read(InputStream in) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length = 0;
+        while (true) {
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read == -1) break;
+            length += read;
+
+            // Handle every complete line, then move whatever is left over to the front
+            int lineStart = 0;
+            for (int i = 0; i < length; i++) {
+                if (buffer[i] == '\n') {
+                    readLine(buffer, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            length -= lineStart;
+            System.arraycopy(buffer, lineStart, buffer, 0, length);
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2); // A very long line, make room for the rest of it
+            }
+        }
+        if (length > 0) readLine(buffer, 0, length); // No trailing newline
+    }
+
+    private void readLine(byte[] line, int start, int end) {
+        if (end > start && line[end - 1] == '\r') end--;
+
+        // Split the line on spaces
+        int tokens = 0;
+        int pos = start;
+        while (pos < end && tokens < MAX_TOKENS) {
+            while (pos < end && line[pos] == ' ') pos++;
+            if (pos == end) break;
+            starts[tokens] = pos;
+            while (pos < end && line[pos] != ' ') pos++;
+            ends[tokens++] = pos;
+        }
+        if (tokens < 3 || ends[0] - starts[0] != 3 || line[starts[0] + 2] != ':') return;
+
+        byte b0 = line[starts[0]], b1 = line[starts[0] + 1];
+        if (b0 == 'P' && b1 == 'K') {
+            visitor.visitPackage(intern(line, 1), intern(line, 2));
+        } else if (b0 == 'C' && b1 == 'L') {
+            visitor.visitClass(intern(line, 1), intern(line, 2));
+        } else if (b0 == 'F' && b1 == 'D') {
+            int notch = lastSlash(line, 1);
+            int srg = lastSlash(line, 2);
+            visitor.visitField(
+                    symbols.intern(line, starts[1], notch - starts[1]), symbols.intern(line, notch + 1, ends[1] - notch - 1),
+                    symbols.intern(line, starts[2], srg - starts[2]), symbols.intern(line, srg + 1, ends[2] - srg - 1));
+        } else if (b0 == 'M' && b1 == 'D' && tokens == 5) {
+            int notch = lastSlash(line, 1);
+            int srg = lastSlash(line, 3);
+            visitor.visitMethod(
+                    symbols.intern(line, starts[1], notch - starts[1]), symbols.intern(line, notch + 1, ends[1] - notch - 1),
+                    intern(line, 2),
+                    symbols.intern(line, starts[3], srg - starts[3]), symbols.intern(line, srg + 1, ends[3] - srg - 1),
+                    intern(line, 4));
+        }
+    }
+
+    private int intern(byte[] line, int token) {
+        return symbols.intern(line, starts[token], ends[token] - starts[token]);
+    }
+
+    private int lastSlash(byte[] line, int token) {
+        for (int i = ends[token] - 1; i >= starts[token]; i--) {
+            if (line[i] == '/') return i;
+        }
+        throw new IllegalArgumentException("Expected an owner in " + new String(line, starts[token], ends[token] - starts[token]));
+    }
+
+}
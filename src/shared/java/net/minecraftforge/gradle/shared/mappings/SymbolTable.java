@@ -0,0 +1,224 @@
+package net.minecraftforge.gradle.shared.mappings;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Interns strings into dense int IDs, so each distinct owner, name or descriptor is only kept once.<br/>
+ * IDs start at 0 and are handed out in order. Backed by an open-addressing hash table, without any per-symbol
+ * objects other than the strings themselves. Not thread-safe.
+ */
+public final class SymbolTable {
+
+    private String[] symbols;
+    private int[] hashes;
+    // Slot -> ID + 1, or 0 if empty
+    private int[] slots;
+    private int size = 0;
+
+    public SymbolTable() {
+        this(1024);
+    }
+
+    public SymbolTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        this.symbols = new String[Math.max(16, expectedSize)];
+        this.hashes = new int[symbols.length];
+        this.slots = new int[capacity];
+    }
+
+    private SymbolTable(String[] symbols, int[] hashes, int[] slots) {
+        this.symbols = symbols;
+        this.hashes = hashes;
+        this.slots = slots;
+        this.size = symbols.length;
+    }
+
+    /**
+     * Gets the ID of a symbol, adding it to the table if it isn't there yet.
+     */
+    public int intern(String symbol) {
+        int hash = mix(symbol.hashCode());
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id == -1) {
+                return add(symbol, hash, slot);
+            }
+            if (hashes[id] == hash && symbols[id].equals(symbol)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Gets the ID of a symbol encoded as UTF-8, adding it to the table if it isn't there yet.<br/>
+     * ASCII symbols are looked up without decoding them, so a symbol that's already in the table costs no allocations.
+     */
+    public int intern(byte[] bytes, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (bytes[i] < 0) {
+                return intern(new String(bytes, offset, length, StandardCharsets.UTF_8)); // Not ASCII, chars won't match bytes
+            }
+            hash = 31 * hash + bytes[i]; // Same as String.hashCode() for ASCII
+        }
+        hash = mix(hash);
+
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id == -1) {
+                return add(new String(bytes, offset, length, StandardCharsets.US_ASCII), hash, slot);
+            }
+            if (hashes[id] == hash && equals(symbols[id], bytes, offset, length)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Gets the ID of a symbol, without adding it.
+     *
+     * @return The ID, or {@code -1} if the symbol isn't in the table.
+     */
+    public int find(String symbol) {
+        int hash = mix(symbol.hashCode());
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id == -1) return -1;
+            if (hashes[id] == hash && symbols[id].equals(symbol)) return id;
+        }
+    }
+
+    /**
+     * Gets the symbol with the given ID.
+     */
+    public String get(int id) {
+        return symbols[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Writes the table as its lengths, the end offset of every symbol in the string pool, the hashes and slots, and
+     * finally the string pool itself as UTF-8, padded to a multiple of 4 bytes so whatever follows stays aligned.
+     */
+    void write(DataOutputStream out) throws IOException {
+        byte[][] encoded = new byte[size][];
+        int poolLength = 0;
+        for (int id = 0; id < size; id++) {
+            encoded[id] = symbols[id].getBytes(StandardCharsets.UTF_8);
+            poolLength += encoded[id].length;
+        }
+        int padding = -poolLength & 3;
+
+        out.writeInt(size);
+        out.writeInt(slots.length);
+        out.writeInt(poolLength + padding);
+        int offset = 0;
+        for (int id = 0; id < size; id++) {
+            out.writeInt(offset += encoded[id].length);
+        }
+        for (int id = 0; id < size; id++) {
+            out.writeInt(hashes[id]);
+        }
+        for (int slot : slots) {
+            out.writeInt(slot);
+        }
+        for (byte[] symbol : encoded) {
+            out.write(symbol);
+        }
+        out.write(new byte[padding]);
+    }
+
+    /**
+     * Reads a table written by {@link #write(DataOutputStream)}, leaving the buffer just past it.<br/>
+     * The hashes and slots are read as they are, so no symbol needs to be hashed again.
+     */
+    static SymbolTable read(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        int slotCount = buffer.getInt();
+        int poolLength = buffer.getInt();
+        if (size < 0 || Integer.bitCount(slotCount) != 1 || slotCount / 2 < size || poolLength < 0) {
+            throw new IllegalArgumentException("Corrupt symbol table");
+        }
+        int[] ends = MappingTable.readInts(buffer, size);
+        int[] hashes = MappingTable.readInts(buffer, size);
+        int[] slots = MappingTable.readInts(buffer, slotCount);
+        if (poolLength > buffer.remaining()) throw new IllegalArgumentException("Corrupt symbol table pool");
+        byte[] pool = new byte[poolLength];
+        buffer.get(pool);
+
+        // Every ID must be in exactly one slot, which also leaves empty slots for lookups to stop at
+        boolean[] slotted = new boolean[size];
+        for (int slot : slots) {
+            if (slot < 0 || slot > size || slot != 0 && slotted[slot - 1]) {
+                throw new IllegalArgumentException("Corrupt symbol table slots");
+            }
+            if (slot != 0) slotted[slot - 1] = true;
+        }
+        for (boolean found : slotted) {
+            if (!found) throw new IllegalArgumentException("Corrupt symbol table slots");
+        }
+
+        String[] symbols = new String[size];
+        int start = 0;
+        for (int id = 0; id < size; id++) {
+            if (ends[id] < start || ends[id] > poolLength) {
+                throw new IllegalArgumentException("Corrupt symbol table offsets");
+            }
+            symbols[id] = new String(pool, start, ends[id] - start, StandardCharsets.UTF_8);
+            start = ends[id];
+        }
+        return new SymbolTable(symbols, hashes, slots);
+    }
+
+    private static boolean equals(String symbol, byte[] bytes, int offset, int length) {
+        if (symbol.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (symbol.charAt(i) != bytes[offset + i]) return false;
+        }
+        return true;
+    }
+
+    private int add(String symbol, int hash, int slot) {
+        if (size == symbols.length) {
+            symbols = Arrays.copyOf(symbols, Math.max(16, size * 2));
+            hashes = Arrays.copyOf(hashes, Math.max(16, size * 2));
+        }
+        int id = size++;
+        symbols[id] = symbol;
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) rehash();
+        return id;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    /**
+     * Spreads the bits of a hash code, since string hashes are poorly distributed in their low bits.
+     */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+}
@@ -0,0 +1,52 @@
+package net.minecraftforge.gradle.shared.repo;
+
+import org.gradle.internal.hash.HashValue;
+import org.gradle.internal.resource.metadata.DefaultExternalResourceMetaData;
+import org.gradle.internal.resource.metadata.ExternalResourceMetaData;
+
+import javax.annotation.Nullable;
+import java.net.URI;
+
+/**
+ * Lightweight description of an artifact, which can be handed to Gradle without producing its contents.
+ */
+public class ArtifactMetadata {
+
+    private final long length;
+    @Nullable
+    private final HashValue sha1;
+    @Nullable
+    private final String etag;
+
+    public ArtifactMetadata(long length, @Nullable HashValue sha1, @Nullable String etag) {
+        this.length = length;
+        this.sha1 = sha1;
+        this.etag = etag;
+    }
+
+    public ArtifactMetadata(long length, @Nullable HashValue sha1) {
+        this(length, sha1, null);
+    }
+
+    /**
+     * Gets the length of the artifact in bytes, or {@code -1} if unknown.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    @Nullable
+    public HashValue getSha1() {
+        return sha1;
+    }
+
+    @Nullable
+    public String getEtag() {
+        return etag;
+    }
+
+    public ExternalResourceMetaData toExternalResourceMetaData(URI uri) {
+        return new DefaultExternalResourceMetaData(uri, null, length, null, etag, sha1);
+    }
+
+}
@@ -0,0 +1,184 @@
+package net.minecraftforge.gradle.shared.repo;
+
+import com.google.common.collect.ImmutableMap;
+import net.minecraftforge.gradle.shared.util.IOSupplier;
+import org.gradle.api.artifacts.ArtifactIdentifier;
+import org.gradle.internal.hash.HashValue;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the checksums of produced artifacts, keyed by the hash the artifacts declare up front.<br/>
+ * Checksums are computed at most once per artifact and kept on disk, so answering a checksum request never
+ * needs the artifact to be produced again. Artifacts that are already in the store are hashed from the stored copy.
+ */
+public class ChecksumIndex {
+
+    // Supported checksum file extensions, and the digest each of them holds
+    private static final Map<String, String> ALGORITHMS = ImmutableMap.of("sha1", "SHA-1", "md5", "MD5");
+
+    @Nullable
+    private final File directory;
+    @Nullable
+    private final CustomRepository.ArtifactStore store;
+    @Nullable
+    private final File cachesRoot;
+    private final Map<HashValue, Properties> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param directory  Where checksums are persisted, or {@code null} to only keep them in memory.
+     * @param store      The store to look for already produced artifacts in, if any.
+     * @param cachesRoot The root of Gradle's caches, which the store lives in.
+     */
+    public ChecksumIndex(@Nullable File directory, @Nullable CustomRepository.ArtifactStore store, @Nullable File cachesRoot) {
+        this.directory = directory;
+        this.store = store;
+        this.cachesRoot = cachesRoot;
+    }
+
+    /**
+     * Checks whether an extension is that of a checksum file, such as {@code jar.sha1}.
+     *
+     * @return The checksum algorithm, or {@code null} if it isn't a checksum file.
+     */
+    @Nullable
+    public static String getAlgorithm(String extension) {
+        int dot = extension.lastIndexOf('.');
+        if (dot <= 0) return null;
+        String algorithm = extension.substring(dot + 1);
+        return ALGORITHMS.containsKey(algorithm) ? algorithm : null;
+    }
+
+    /**
+     * Formats a checksum the way maven repositories serve them.
+     */
+    public static byte[] format(HashValue checksum, String algorithm) {
+        int length = algorithm.equals("md5") ? 32 : 40;
+        return checksum.asZeroPaddedHexString(length).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the checksum of an artifact, producing it only if it's never been hashed before and isn't in the store.
+     */
+    public HashValue get(ArtifactIdentifier identifier, String algorithm, IOSupplier<StreamedResource> supplier) throws IOException {
+        StreamedResource resource = supplier.get();
+        if (resource == null) throw new FileNotFoundException("Could not find " + MavenArtifactPath.format(identifier));
+        try {
+            HashValue key = resource.getHash();
+            if (key == null) {
+                // Nothing identifies the contents, so there's nothing to remember them by
+                return digest(resource.getStream()).get(algorithm);
+            }
+
+            Properties entry = getEntry(key);
+            String checksum = entry.getProperty(algorithm);
+            if (checksum != null) return HashValue.parse(checksum);
+
+            // Hash every algorithm in one pass, preferably from the stored copy
+            File stored = store != null && cachesRoot != null ? store.getArtifactPath(cachesRoot, identifier, key) : null;
+            Map<String, HashValue> checksums;
+            if (stored != null && stored.exists()) {
+                try (InputStream in = new FileInputStream(stored)) {
+                    checksums = digest(in);
+                }
+            } else {
+                checksums = digest(resource.getStream());
+            }
+            record(key, checksums);
+            return checksums.get(algorithm);
+        } finally {
+            resource.close();
+        }
+    }
+
+    /**
+     * Records a checksum that was computed elsewhere, such as while storing an artifact.
+     */
+    public void record(HashValue key, String algorithm, HashValue checksum) throws IOException {
+        Map<String, HashValue> checksums = new HashMap<>();
+        checksums.put(algorithm, checksum);
+        record(key, checksums);
+    }
+
+    private void record(HashValue key, Map<String, HashValue> checksums) throws IOException {
+        Properties entry = getEntry(key);
+        synchronized (entry) {
+            boolean changed = false;
+            for (Map.Entry<String, HashValue> checksum : checksums.entrySet()) {
+                String value = new String(format(checksum.getValue(), checksum.getKey()), StandardCharsets.UTF_8);
+                changed |= !value.equals(entry.setProperty(checksum.getKey(), value));
+            }
+            if (!changed || directory == null) return;
+
+            File file = getFile(key);
+            file.getParentFile().mkdirs();
+            File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            try (Writer writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+                entry.store(writer, null);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Properties getEntry(HashValue key) {
+        return entries.computeIfAbsent(key, $ -> {
+            Properties entry = new Properties();
+            if (directory == null) return entry;
+            File file = getFile(key);
+            if (!file.exists()) return entry;
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                entry.load(reader);
+            } catch (IOException | IllegalArgumentException ex) {
+                entry.clear(); // Corrupt, it will be recomputed
+            }
+            return entry;
+        });
+    }
+
+    private File getFile(HashValue key) {
+        String hash = key.asZeroPaddedHexString(40);
+        return new File(directory, hash.substring(0, 2) + "/" + hash + ".properties");
+    }
+
+    private static Map<String, HashValue> digest(InputStream in) throws IOException {
+        Map<String, MessageDigest> digests = new HashMap<>();
+        try {
+            for (Map.Entry<String, String> algorithm : ALGORITHMS.entrySet()) {
+                digests.put(algorithm.getKey(), MessageDigest.getInstance(algorithm.getValue()));
+            }
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        byte[] buffer = new byte[65536];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            for (MessageDigest digest : digests.values()) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        Map<String, HashValue> checksums = new HashMap<>();
+        for (Map.Entry<String, MessageDigest> digest : digests.entrySet()) {
+            checksums.put(digest.getKey(), new HashValue(digest.getValue().digest()));
+        }
+        return checksums;
+    }
+
+}
@@ -0,0 +1,35 @@
+package net.minecraftforge.gradle.shared.repo;
+
+import org.gradle.api.artifacts.ArtifactIdentifier;
+import org.gradle.internal.hash.HashValue;
+
+import java.io.File;
+
+/**
+ * {@link CustomRepository.ArtifactStore} implementation that keeps artifacts on disk, addressed by their SHA-1.<br/>
+ * The store lives outside of Gradle's dependency cache, so its contents are shared between projects
+ * and survive daemon restarts as well as {@code --refresh-dependencies}.
+ */
+public class ContentAddressedArtifactStore implements CustomRepository.ArtifactStore {
+
+    private static final String STORE_DIR = "forgegradle/artifacts";
+
+    @Override
+    public File getArtifactPath(File cachesRoot, ArtifactIdentifier identifier, HashValue sha1) {
+        String hash = sha1.asZeroPaddedHexString(40);
+        File dir = new File(cachesRoot, STORE_DIR + "/" + hash.substring(0, 2) + "/" + hash);
+        return new File(dir, getFileName(identifier));
+    }
+
+    /**
+     * Gets the maven-style file name of an artifact.
+     */
+    private static String getFileName(ArtifactIdentifier identifier) {
+        String name = identifier.getModuleVersionIdentifier().getName() + "-" + identifier.getModuleVersionIdentifier().getVersion();
+        if (identifier.getClassifier() != null) {
+            name += "-" + identifier.getClassifier();
+        }
+        return name + "." + identifier.getExtension();
+    }
+
+}
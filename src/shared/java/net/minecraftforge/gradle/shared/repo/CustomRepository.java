@@ -1,18 +1,23 @@
 package net.minecraftforge.gradle.shared.repo;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.io.CountingInputStream;
+import net.minecraftforge.gradle.shared.util.HashingInputStream;
 import net.minecraftforge.gradle.shared.util.IOFunction;
 import net.minecraftforge.gradle.shared.util.IOSupplier;
+import net.minecraftforge.gradle.shared.util.POMBuilder;
 import net.minecraftforge.gradle.shared.util.ReflectionUtils;
+import net.minecraftforge.gradle.shared.util.Util;
 import org.gradle.api.Action;
 import org.gradle.api.NamedDomainObjectCollection;
+import org.gradle.api.Project;
 import org.gradle.api.Transformer;
 import org.gradle.api.artifacts.ArtifactIdentifier;
 import org.gradle.api.artifacts.dsl.RepositoryHandler;
 import org.gradle.api.artifacts.repositories.ArtifactRepository;
 import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
 import org.gradle.api.internal.artifacts.DefaultArtifactIdentifier;
-import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ConfiguredModuleComponentRepository;
 import org.gradle.api.internal.artifacts.repositories.AbstractArtifactRepository;
 import org.gradle.api.internal.artifacts.repositories.DefaultMavenArtifactRepository;
@@ -21,6 +26,7 @@ import org.gradle.api.internal.artifacts.repositories.resolver.ExternalResourceA
 import org.gradle.api.internal.artifacts.repositories.resolver.ExternalResourceResolver;
 import org.gradle.api.internal.artifacts.repositories.resolver.MavenResolver;
 import org.gradle.api.resources.ResourceException;
+import org.gradle.internal.hash.HashUtil;
 import org.gradle.internal.hash.HashValue;
 import org.gradle.internal.impldep.org.apache.commons.io.IOUtils;
 import org.gradle.internal.resource.AbstractExternalResource;
@@ -31,6 +37,7 @@ import org.gradle.internal.resource.ExternalResourceRepository;
 import org.gradle.internal.resource.ExternalResourceWriteResult;
 import org.gradle.internal.resource.ReadableContent;
 import org.gradle.internal.resource.ResourceExceptions;
+import org.gradle.internal.resource.metadata.DefaultExternalResourceMetaData;
 import org.gradle.internal.resource.metadata.ExternalResourceMetaData;
 
 import javax.annotation.Nullable;
@@ -39,21 +46,28 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 public class CustomRepository extends AbstractArtifactRepository implements ResolutionAwareRepository {
 
-    private static final Pattern URL_PATTERN = Pattern.compile(
-            "^/(?<group>\\S+(?:/\\S+)*)/(?<name>\\S+)/(?<version>\\S+)/" +
-                    "\\2-\\3(?:-(?<classifier>[^.\\s]+))?\\.(?<extension>\\S+)$");
-
-    public static CustomRepository add(RepositoryHandler handler, String name, Object url,
+    public static CustomRepository add(Project project, String name, Object url,
                                        @Nullable ArtifactProvider provider, @Nullable ArtifactStore store) {
+        RepositoryHandler handler = project.getRepositories();
+        File cachesRoot = new File(project.getGradle().getGradleUserHomeDir(), "caches");
+
         // Create the real maven repo we'll be using and remove it
         MavenArtifactRepository maven = handler.maven($ -> {
             $.setName(name);
@@ -65,21 +79,51 @@ public class CustomRepository extends AbstractArtifactRepository implements Reso
         handler.remove(maven);
 
         // Add our own custom repo instead, using the real one in the background
-        CustomRepository repo = new CustomRepository((DefaultMavenArtifactRepository) maven, provider, store);
+        CustomRepository repo = new CustomRepository((DefaultMavenArtifactRepository) maven, handler, provider, store, cachesRoot,
+                ResolutionMetrics.get(project).forRepository(name));
         handler.add(repo);
         return repo;
     }
 
+    private static final ForkJoinPool EXECUTOR = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors()),
+            pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("ForgeGradle artifact producer " + thread.getPoolIndex());
+                return thread;
+            }, null, true);
+
     private final DefaultMavenArtifactRepository maven;
+    private final RepositoryHandler handler;
     @Nullable
     private final ArtifactProvider provider;
     @Nullable
     private final ArtifactStore store;
+    private final File cachesRoot;
+    private final ResolutionMetrics.Repository metrics;
+    private final ChecksumIndex checksums;
+
+    // Paths that were already parsed, and paths the provider is known to have nothing for
+    private final Cache<String, ArtifactIdentifier> identifiers = CacheBuilder.newBuilder().maximumSize(1024).build();
+    private final Cache<String, Boolean> misses = CacheBuilder.newBuilder().maximumSize(4096).build();
 
-    private CustomRepository(DefaultMavenArtifactRepository maven, @Nullable ArtifactProvider provider, @Nullable ArtifactStore store) {
+    // Artifacts that are being fetched into the store ahead of time
+    private final Map<ArtifactIdentifier, CompletableFuture<?>> prefetches = new HashMap<>();
+
+    private CustomRepository(DefaultMavenArtifactRepository maven, RepositoryHandler handler, @Nullable ArtifactProvider provider,
+                             @Nullable ArtifactStore store, File cachesRoot, ResolutionMetrics.Repository metrics) {
         this.maven = maven;
+        this.handler = handler;
         this.provider = provider;
         this.store = store;
+        this.cachesRoot = cachesRoot;
+        this.metrics = metrics;
+        this.checksums = new ChecksumIndex(new File(cachesRoot, "forgegradle/checksums"), store, cachesRoot);
+        if (provider instanceof ArtifactProvider.Simple) {
+            ArtifactProvider.Simple simple = (ArtifactProvider.Simple) provider;
+            simple.checksums = checksums; // Let it answer checksum requests from the index
+            simple.store = store; // And read the artifacts it's made from through the store
+            simple.cachesRoot = cachesRoot;
+        }
     }
 
     @Override
@@ -118,6 +162,13 @@ public class CustomRepository extends AbstractArtifactRepository implements Reso
         return resolver;
     }
 
+    /**
+     * Gets the executor artifacts are produced on. Shared by all custom repositories.
+     */
+    public static Executor getExecutor() {
+        return EXECUTOR;
+    }
+
     public interface ArtifactProvider {
 
         default boolean supportsPOMs() {
@@ -126,22 +177,201 @@ public class CustomRepository extends AbstractArtifactRepository implements Reso
 
         IOSupplier<StreamedResource> getArtifact(ArtifactIdentifier identifier) throws IOException;
 
+        /**
+         * Asynchronously produces an artifact on the given executor.<br/>
+         * By default, this runs the supplier returned by {@link #getArtifact(ArtifactIdentifier)} on the executor.
+         *
+         * @return A future that completes with the resource, or with {@code null} if this provider has nothing for the artifact.
+         */
+        default CompletableFuture<StreamedResource> getArtifactAsync(ArtifactIdentifier identifier, Executor executor) {
+            return Util.supplyAsync(() -> {
+                IOSupplier<StreamedResource> supplier = getArtifact(identifier);
+                return supplier == null ? null : supplier.get();
+            }, executor);
+        }
+
+        /**
+         * Gets the metadata of an artifact from a cheap source, such as a manifest, without producing its contents.<br/>
+         * The SHA-1, if any, <b>must</b> be the hash of the exact contents that would be served.
+         *
+         * @return The metadata, or {@code null} if it can't be determined without producing the artifact.
+         */
+        @Nullable
+        default ArtifactMetadata getMetadata(ArtifactIdentifier identifier) throws IOException {
+            return null;
+        }
+
+        /**
+         * Gets the hash an artifact declares up front, which it's kept in the artifact store under, without producing it.<br/>
+         * Only asynchronous providers need this, since resources handed out synchronously aren't produced until they're read.
+         *
+         * @return The hash, or {@code null} if it can't be determined without producing the artifact.
+         */
+        @Nullable
+        default HashValue getHash(ArtifactIdentifier identifier) throws IOException {
+            return null;
+        }
+
+        /**
+         * Whether the dependencies listed in the POMs this provider generates, as well as their main jar,
+         * should be fetched into the artifact store in the background as soon as the POM is served.
+         */
+        default boolean prefetchDependencies() {
+            return false;
+        }
+
+        /**
+         * An {@link ArtifactProvider} that produces its artifacts asynchronously, so that slow work such as
+         * downloads and remapping can overlap with the production of other artifacts.
+         */
+        interface Async extends ArtifactProvider {
+
+            @Override
+            CompletableFuture<StreamedResource> getArtifactAsync(ArtifactIdentifier identifier, Executor executor);
+
+            /**
+             * Adapts the asynchronous production for synchronous callers.<br/>
+             * Whether the artifact exists is only known once the supplier is invoked.
+             */
+            @Override
+            default IOSupplier<StreamedResource> getArtifact(ArtifactIdentifier identifier) {
+                return () -> Util.join(getArtifactAsync(identifier, getExecutor()));
+            }
+
+        }
+
+        @FunctionalInterface
+        interface AsyncExtensionProvider {
+
+            CompletableFuture<StreamedResource> apply(ArtifactIdentifier identifier, Executor executor);
+
+        }
+
         class Simple implements ArtifactProvider {
 
             private final Map<String, IOFunction<ArtifactIdentifier, IOSupplier<StreamedResource>>> extensions = new HashMap<>();
+            private final Map<String, AsyncExtensionProvider> asyncExtensions = new HashMap<>();
+            private final Map<String, IOFunction<ArtifactIdentifier, ArtifactMetadata>> metadata = new HashMap<>();
+            private final Map<String, IOFunction<ArtifactIdentifier, HashValue>> hashes = new HashMap<>();
+            // Replaced by a persistent index once this provider is added to a repository
+            private ChecksumIndex checksums = new ChecksumIndex(null, null, null);
+            @Nullable
+            private ArtifactStore store;
+            @Nullable
+            private File cachesRoot;
 
             protected final void addExtensionProvider(String extension, IOFunction<ArtifactIdentifier, IOSupplier<StreamedResource>> provider) {
                 extensions.put(extension, provider);
             }
 
+            protected final void addAsyncExtensionProvider(String extension, AsyncExtensionProvider provider) {
+                asyncExtensions.put(extension, provider);
+            }
+
+            protected final void addMetadataProvider(String extension, IOFunction<ArtifactIdentifier, ArtifactMetadata> provider) {
+                metadata.put(extension, provider);
+            }
+
+            /**
+             * Adds a way to get the hash the artifacts of an asynchronous extension provider declare, without producing them.
+             */
+            protected final void addHashProvider(String extension, IOFunction<ArtifactIdentifier, HashValue> provider) {
+                hashes.put(extension, provider);
+            }
+
             protected boolean validate(ArtifactIdentifier identifier) {
                 return true;
             }
 
+            /**
+             * Reads an artifact whose SHA-1 is known up front through the artifact store, so whoever resolves it later
+             * finds it there instead of downloading it again. If it isn't stored yet, it's downloaded and moved into the store.<br/>
+             * Without a store, or an identifier to store it under, the download is read and then deleted.
+             *
+             * @param download Downloads the artifact into a file that's already verified against the SHA-1.
+             */
+            protected final <T> T readStored(@Nullable ArtifactIdentifier identifier, HashValue sha1, IOSupplier<File> download,
+                                             IOFunction<File, T> reader) throws IOException {
+                File stored = store != null && identifier != null ? store.getArtifactPath(cachesRoot, identifier, sha1) : null;
+                if (stored == null) {
+                    File file = download.get();
+                    try {
+                        return reader.apply(file);
+                    } finally {
+                        file.delete();
+                    }
+                }
+                if (!stored.exists()) moveIntoStore(download.get(), stored, sha1);
+                return reader.apply(stored);
+            }
+
+            private boolean isAsync(ArtifactIdentifier identifier) {
+                return asyncExtensions.containsKey(identifier.getExtension()) && validate(identifier);
+            }
+
             @Override
             public IOSupplier<StreamedResource> getArtifact(ArtifactIdentifier identifier) throws IOException {
                 if (!validate(identifier)) return null;
+                AsyncExtensionProvider asyncProvider = asyncExtensions.get(identifier.getExtension());
+                if (asyncProvider != null) {
+                    return () -> Util.join(asyncProvider.apply(identifier, getExecutor()));
+                }
                 IOFunction<ArtifactIdentifier, IOSupplier<StreamedResource>> provider = extensions.get(identifier.getExtension());
+                if (provider == null) {
+                    String algorithm = ChecksumIndex.getAlgorithm(identifier.getExtension());
+                    return algorithm == null ? null : getChecksum(identifier, algorithm);
+                }
+                return provider.apply(identifier);
+            }
+
+            /**
+             * Serves the checksum file of an artifact, such as {@code .jar.sha1}.<br/>
+             * In order, this looks at the metadata providers, at the checksum index and at the artifact store.
+             * Only if none of them know about it is the artifact produced, and its checksums remembered from then on.
+             */
+            @Nullable
+            private IOSupplier<StreamedResource> getChecksum(ArtifactIdentifier identifier, String algorithm) throws IOException {
+                String extension = identifier.getExtension().substring(0, identifier.getExtension().length() - algorithm.length() - 1);
+                ArtifactIdentifier artifact = new DefaultArtifactIdentifier(identifier.getModuleVersionIdentifier(),
+                        identifier.getName(), extension, extension, identifier.getClassifier());
+
+                // Manifests usually know the SHA-1 without anything being produced
+                if (algorithm.equals("sha1")) {
+                    ArtifactMetadata metadata = getMetadata(artifact);
+                    if (metadata != null && metadata.getSha1() != null) {
+                        byte[] checksum = ChecksumIndex.format(metadata.getSha1(), algorithm);
+                        return () -> StreamedResource.ofBytes(checksum);
+                    }
+                }
+
+                IOSupplier<StreamedResource> supplier = getArtifact(artifact);
+                if (supplier == null) return null;
+                ChecksumIndex checksums = this.checksums;
+                return () -> StreamedResource.ofByteSupplier(() -> ChecksumIndex.format(checksums.get(artifact, algorithm, supplier), algorithm));
+            }
+
+            @Override
+            public CompletableFuture<StreamedResource> getArtifactAsync(ArtifactIdentifier identifier, Executor executor) {
+                AsyncExtensionProvider asyncProvider = asyncExtensions.get(identifier.getExtension());
+                if (asyncProvider != null && validate(identifier)) {
+                    return asyncProvider.apply(identifier, executor);
+                }
+                return ArtifactProvider.super.getArtifactAsync(identifier, executor); // Run the synchronous provider on the executor
+            }
+
+            @Nullable
+            @Override
+            public ArtifactMetadata getMetadata(ArtifactIdentifier identifier) throws IOException {
+                if (!validate(identifier)) return null;
+                IOFunction<ArtifactIdentifier, ArtifactMetadata> provider = metadata.get(identifier.getExtension());
+                return provider == null ? null : provider.apply(identifier);
+            }
+
+            @Nullable
+            @Override
+            public HashValue getHash(ArtifactIdentifier identifier) throws IOException {
+                if (!validate(identifier)) return null;
+                IOFunction<ArtifactIdentifier, HashValue> provider = hashes.get(identifier.getExtension());
                 return provider == null ? null : provider.apply(identifier);
             }
 
@@ -157,6 +387,9 @@ public class CustomRepository extends AbstractArtifactRepository implements Reso
 
     private class StreamingRepo implements ExternalResourceRepository {
 
+        // Resources produced during this resolution, so each one is only produced once
+        private final Map<URI, CompletableFuture<ProducedResource>> produced = new HashMap<>();
+
         @Override
         public ExternalResourceRepository withProgressLogging() {
             return this;
@@ -165,26 +398,157 @@ public class CustomRepository extends AbstractArtifactRepository implements Reso
         @Override
         public ExternalResource resource(ExternalResourceName name, boolean revalidate) {
             URI uri = name.getUri();
-            if (provider == null) return new NullExternalResource(uri);
+            if (provider == null) return new NullExternalResource(uri, null);
+            String path = uri.getPath();
+            String extension = getExtension(path);
+            metrics.request(extension);
+            if (misses.getIfPresent(path) != null) {
+                metrics.miss(extension);
+                return new NullExternalResource(uri, null);
+            }
             try {
-                Matcher matcher = URL_PATTERN.matcher(uri.getPath());
-                if (!matcher.matches()) return new NullExternalResource(uri);
-                ArtifactIdentifier identifier = new DefaultArtifactIdentifier(
-                        new DefaultModuleVersionIdentifier(
-                                matcher.group("group").replace('/', '.'),
-                                matcher.group("name"),
-                                matcher.group("version")
-                        ),
-                        matcher.group("name"),
-                        matcher.group("extension"),
-                        matcher.group("extension"),
-                        matcher.group("classifier"));
+                ArtifactIdentifier identifier = getIdentifier(path);
+                if (identifier == null) {
+                    misses.put(path, Boolean.TRUE);
+                    metrics.miss(extension);
+                    return new NullExternalResource(uri, null);
+                }
                 IOSupplier<StreamedResource> resource = provider.getArtifact(identifier);
-                if (resource == null) return new NullExternalResource(uri);
-                return new CustomArtifactExternalResource(uri, resource);
+                if (resource == null) {
+                    misses.put(path, Boolean.TRUE);
+                    metrics.miss(extension);
+                    return new NullExternalResource(uri, null);
+                }
+                metrics.hit(extension);
+                return new CustomArtifactExternalResource(uri, extension, () -> read(uri, identifier, resource),
+                        () -> getMetadata(uri, identifier, resource));
             } catch (IOException e) {
-                return new NullExternalResource(uri);
+                // Not a miss, so Gradle doesn't remember it as one
+                metrics.miss(extension);
+                return new NullExternalResource(uri, e);
+            }
+        }
+
+        /**
+         * Gets the extension of the file a path points to, which is what metrics are grouped by.
+         */
+        private String getExtension(String path) {
+            int slash = path.lastIndexOf('/');
+            int dot = path.lastIndexOf('.');
+            return dot > slash ? path.substring(dot + 1) : "";
+        }
+
+        @Nullable
+        private ArtifactIdentifier getIdentifier(String path) {
+            ArtifactIdentifier identifier = identifiers.getIfPresent(path);
+            if (identifier == null) {
+                identifier = MavenArtifactPath.parse(path);
+                if (identifier != null) identifiers.put(path, identifier);
             }
+            return identifier;
+        }
+
+        /**
+         * Produces a resource, or waits for it if another thread is already producing it.<br/>
+         * The production itself runs on the repository executor, using the supplier the provider already handed out.
+         *
+         * @return The produced resource, or {@code null} if the provider had nothing to offer.
+         */
+        @Nullable
+        private ProducedResource produce(URI uri, ArtifactIdentifier identifier, IOSupplier<StreamedResource> supplier) throws IOException {
+            // If this resource is already being produced, wait for it instead
+            CompletableFuture<ProducedResource> future;
+            synchronized (produced) {
+                future = produced.get(uri);
+                if (future == null) {
+                    long start = System.nanoTime();
+                    // If the artifact is being prefetched, wait for it to land in the store first
+                    future = getPendingPrefetch(identifier)
+                            .thenCompose($ -> startProduction(identifier, supplier))
+                            .thenApplyAsync(resource -> {
+                                try {
+                                    return materialize(resource, identifier);
+                                } catch (IOException ex) {
+                                    throw new UncheckedIOException(ex);
+                                }
+                            }, EXECUTOR);
+                    produced.put(uri, future);
+
+                    // Let whoever is waiting know about failures, but allow later requests to try again
+                    CompletableFuture<ProducedResource> claimed = future;
+                    future.whenComplete((resource, ex) -> {
+                        if (ex == null) {
+                            if (resource != null) metrics.produced(identifier.getExtension(), System.nanoTime() - start);
+                            return;
+                        }
+                        synchronized (produced) {
+                            produced.remove(uri, claimed);
+                        }
+                    });
+                }
+            }
+
+            ProducedResource resource = Util.join(future);
+            if (resource == null) {
+                // Asynchronous providers only tell us whether they have an artifact once it's produced
+                misses.put(uri.getPath(), Boolean.TRUE);
+            }
+            return resource;
+        }
+
+        /**
+         * Produces a resource for it to be read.<br/>
+         * Temporary contents are deleted once they've been read, so they're only handed out once, and whoever
+         * asks for them next gets them produced again.
+         */
+        @Nullable
+        private ProducedResource read(URI uri, ArtifactIdentifier identifier, IOSupplier<StreamedResource> supplier) throws IOException {
+            ProducedResource resource = produce(uri, identifier, supplier);
+            if (resource != null && resource.temporary) {
+                synchronized (produced) {
+                    CompletableFuture<ProducedResource> future = produced.get(uri);
+                    if (future != null && future.getNow(null) == resource) produced.remove(uri);
+                }
+            }
+            return resource;
+        }
+
+        /**
+         * Starts producing an artifact. Asynchronous productions are started through the provider so their work
+         * can overlap, and everything else just runs the supplier, so the provider isn't asked for it twice.
+         */
+        private CompletableFuture<StreamedResource> startProduction(ArtifactIdentifier identifier, IOSupplier<StreamedResource> supplier) {
+            if (isProducedAsync(identifier)) {
+                return provider.getArtifactAsync(identifier, EXECUTOR);
+            }
+            return Util.supplyAsync(supplier, EXECUTOR);
+        }
+
+        /**
+         * Gets the metadata of a resource, avoiding producing it whenever possible.<br/>
+         * In order, this looks at resources that were already produced, at the provider
+         * and at the artifact store. Only if none of them know about it is the resource produced.
+         */
+        @Nullable
+        private ExternalResourceMetaData getMetadata(URI uri, ArtifactIdentifier identifier, IOSupplier<StreamedResource> supplier) throws IOException {
+            CompletableFuture<ProducedResource> future;
+            synchronized (produced) {
+                future = produced.get(uri);
+            }
+            if (future == null) {
+                ArtifactMetadata metadata = provider.getMetadata(identifier);
+                if (metadata != null && metadata.getSha1() != null) {
+                    return metadata.toExternalResourceMetaData(uri);
+                }
+
+                metadata = getStoredMetadata(identifier, supplier);
+                if (metadata != null) {
+                    return metadata.toExternalResourceMetaData(uri);
+                }
+            }
+
+            ProducedResource resource = produce(uri, identifier, supplier);
+            return resource == null ? null : resource.getMetadata(uri);
         }
 
         @Override
@@ -194,14 +558,243 @@ public class CustomRepository extends AbstractArtifactRepository implements Reso
 
     }
 
+    /**
+     * Whether the provider produces an artifact asynchronously, in which case its supplier only hands out
+     * the resource once it's been produced.
+     */
+    private boolean isProducedAsync(ArtifactIdentifier identifier) {
+        return provider instanceof ArtifactProvider.Async
+                || provider instanceof ArtifactProvider.Simple && ((ArtifactProvider.Simple) provider).isAsync(identifier);
+    }
+
+    /**
+     * Gets the metadata of a resource from the artifact store, if it's already in there.<br/>
+     * The hash to look it up with comes from the provider, or from the resource if it's handed out without being produced.
+     */
+    @Nullable
+    private ArtifactMetadata getStoredMetadata(ArtifactIdentifier identifier, IOSupplier<StreamedResource> supplier) throws IOException {
+        if (store == null) return null;
+        HashValue hash = provider.getHash(identifier);
+        if (hash == null && !isProducedAsync(identifier)) {
+            StreamedResource resource = supplier.get();
+            if (resource == null) return null;
+            try {
+                hash = resource.getHash();
+            } finally {
+                resource.close(); // Never opened, so this is cheap
+            }
+        }
+        if (hash == null) return null;
+        File file = store.getArtifactPath(cachesRoot, identifier, hash);
+        if (!file.exists()) return null;
+        metrics.storeHit(identifier.getExtension());
+        return new ArtifactMetadata(file.length(), getStoredSha1(file));
+    }
+
+    /**
+     * Produces the contents of a resource, storing them if possible.
+     */
+    @Nullable
+    private ProducedResource materialize(@Nullable StreamedResource resource, ArtifactIdentifier identifier) throws IOException {
+        if (resource == null) return null;
+        try {
+            // Only resources that declare their hash up front can be looked up without producing them
+            HashValue hash = resource.getHash();
+            boolean prefetch = provider != null && provider.prefetchDependencies() && "pom".equals(identifier.getExtension());
+            if (store != null && hash != null) {
+                File file = store.getArtifactPath(cachesRoot, identifier, hash);
+                HashValue sha1;
+                if (!file.exists()) {
+                    sha1 = storeResource(resource, file, hash);
+                } else {
+                    metrics.storeHit(identifier.getExtension());
+                    sha1 = getStoredSha1(file);
+                }
+                checksums.record(hash, "sha1", sha1);
+                if (prefetch) {
+                    prefetchDependencies(identifier, Files.readAllBytes(file.toPath())); // POMs are tiny
+                }
+                return new ProducedResource(file, sha1, false);
+            }
+            ProducedResource produced = spillResource(resource, identifier);
+            if (prefetch) {
+                prefetchDependencies(identifier, Files.readAllBytes(produced.file.toPath())); // POMs are tiny
+            }
+            if (hash != null) checksums.record(hash, "sha1", produced.sha1);
+            return produced;
+        } finally {
+            resource.close();
+        }
+    }
+
+    /**
+     * Writes a resource that can't be stored by its declared hash to disk, so its contents don't sit in the heap.<br/>
+     * With a store, the contents end up in it under the hash they turn out to have, so identical contents are only
+     * kept once. Without one, they are kept in a temporary file that's deleted once it's been read.
+     */
+    private ProducedResource spillResource(StreamedResource resource, ArtifactIdentifier identifier) throws IOException {
+        File dir = store != null ? new File(cachesRoot, "forgegradle/tmp") : null;
+        if (dir != null) dir.mkdirs();
+        File tmp = File.createTempFile("produced", "." + identifier.getExtension(), dir);
+        HashValue sha1;
+        try (HashingInputStream in = new HashingInputStream(resource.getStream());
+             FileOutputStream out = new FileOutputStream(tmp)) {
+            IOUtils.copyLarge(in, out);
+            sha1 = in.getHash();
+        } catch (IOException | RuntimeException ex) {
+            tmp.delete();
+            throw ex;
+        }
+        if (store == null) return new ProducedResource(tmp, sha1, true);
+
+        File file = store.getArtifactPath(cachesRoot, identifier, sha1);
+        try {
+            if (file.exists()) {
+                metrics.storeHit(identifier.getExtension());
+            } else {
+                file.getParentFile().mkdirs();
+                writeSha1(file, sha1);
+                try {
+                    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException ex) {
+                    // Someone else stored the same contents in the meantime, keep theirs
+                }
+            }
+        } finally {
+            tmp.delete();
+        }
+        return new ProducedResource(file, sha1, false);
+    }
+
+    /**
+     * Queues the dependencies listed in a POM, along with the main jar of the POM's own artifact,
+     * to be fetched into the store by whichever custom repository can provide them.
+     */
+    private void prefetchDependencies(ArtifactIdentifier pom, byte[] contents) {
+        EXECUTOR.execute(() -> {
+            List<ArtifactIdentifier> targets;
+            try {
+                targets = POMBuilder.parseDependencies(contents);
+            } catch (Exception ex) {
+                return; // Not worth failing over, Gradle will report any real problem when it reads the POM
+            }
+            targets.add(0, new DefaultArtifactIdentifier(pom.getModuleVersionIdentifier(),
+                    pom.getModuleVersionIdentifier().getName(), "jar", "jar", null));
+
+            for (ArtifactIdentifier target : targets) {
+                for (CustomRepository repo : handler.withType(CustomRepository.class)) {
+                    if (repo.prefetch(target)) break;
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts fetching an artifact into the store in the background.<br/>
+     * Only synchronous providers are asked, since they can tell whether they have an artifact without producing it,
+     * and only resources that declare their hash are fetched, since nothing else can be stored.
+     *
+     * @return Whether this repository provides the artifact.
+     */
+    private boolean prefetch(ArtifactIdentifier identifier) {
+        if (provider == null || store == null || provider instanceof ArtifactProvider.Async) return false;
+        synchronized (prefetches) {
+            if (prefetches.containsKey(identifier)) return true;
+        }
+
+        IOSupplier<StreamedResource> supplier;
+        try {
+            supplier = provider.getArtifact(identifier);
+        } catch (IOException ex) {
+            return false;
+        }
+        if (supplier == null) return false;
+
+        synchronized (prefetches) {
+            if (prefetches.containsKey(identifier)) return true;
+            CompletableFuture<?> future = Util.supplyAsync(() -> {
+                StreamedResource resource = supplier.get();
+                if (resource == null) return null;
+                if (resource.getHash() == null) {
+                    resource.close();
+                    return null;
+                }
+                return materialize(resource, identifier);
+            }, EXECUTOR);
+            prefetches.put(identifier, future);
+            future.whenComplete(($, ex) -> {
+                synchronized (prefetches) {
+                    prefetches.remove(identifier);
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Gets a future that completes once any prefetch of the given artifact is done, successfully or not.
+     */
+    private CompletableFuture<?> getPendingPrefetch(ArtifactIdentifier identifier) {
+        CompletableFuture<?> future;
+        synchronized (prefetches) {
+            future = prefetches.get(identifier);
+        }
+        return future == null ? CompletableFuture.completedFuture(null) : future.handle(($, ex) -> null);
+    }
+
+    /**
+     * The contents of a resource after it has been produced.<br/>
+     * Contents are always kept on disk: in the artifact store if there is one, where they can be streamed any amount
+     * of times, and in a temporary file otherwise, which is deleted once the resource opened on it is closed.
+     */
+    private static class ProducedResource {
+
+        private final File file;
+        private final HashValue sha1;
+        private final long length;
+        private final boolean temporary;
+
+        private ProducedResource(File file, HashValue sha1, boolean temporary) {
+            this.file = file;
+            this.sha1 = sha1;
+            this.length = file.length();
+            this.temporary = temporary;
+        }
+
+        private StreamedResource open() {
+            StreamedResource.FileStreamedResource resource = StreamedResource.ofFile(file);
+            return temporary ? resource.deleteOnClose() : resource;
+        }
+
+        private ExternalResourceMetaData getMetadata(URI uri) {
+            return new DefaultExternalResourceMetaData(uri, 0, 0) {
+                @Override
+                public long getContentLength() {
+                    return length;
+                }
+
+                @Override
+                public HashValue getSha1() {
+                    return sha1;
+                }
+            };
+        }
+
+    }
+
     private class CustomArtifactExternalResource extends AbstractExternalResource {
 
         private final URI uri;
-        private final IOSupplier<StreamedResource> resource;
+        private final String extension;
+        private final IOSupplier<ProducedResource> producer;
+        private final IOSupplier<ExternalResourceMetaData> metadata;
 
-        private CustomArtifactExternalResource(URI uri, IOSupplier<StreamedResource> resource) {
+        private CustomArtifactExternalResource(URI uri, String extension, IOSupplier<ProducedResource> producer,
+                                               IOSupplier<ExternalResourceMetaData> metadata) {
             this.uri = uri;
-            this.resource = resource;
+            this.extension = extension;
+            this.producer = producer;
+            this.metadata = metadata;
         }
 
         @Override
@@ -214,21 +807,26 @@ public class CustomRepository extends AbstractArtifactRepository implements Reso
             return uri;
         }
 
-        private StreamedResource getResource() throws IOException {
-            return resource.get();
-        }
-
         @Nullable
         @Override
         public ExternalResourceReadResult<Void> writeToIfPresent(File file) {
             try {
-                StreamedResource resource = getResource();
-                if (resource == null) return null;
-                FileOutputStream out = new FileOutputStream(file);
-                ExternalResourceReadResult<Void> result = writeTo(out);
-                out.close();
-                resource.close();
-                return result;
+                ProducedResource produced = producer.get();
+                if (produced == null) return null;
+                StreamedResource resource = produced.open();
+                long count;
+                try (FileOutputStream out = new FileOutputStream(file)) {
+                    if (resource instanceof StreamedResource.FileStreamedResource) {
+                        // Let the OS copy the file over instead of pulling it through the heap
+                        count = ((StreamedResource.FileStreamedResource) resource).transferTo(out.getChannel());
+                    } else {
+                        count = IOUtils.copyLarge(resource.getStream(), out);
+                    }
+                } finally {
+                    resource.close();
+                }
+                metrics.served(extension, count);
+                return ExternalResourceReadResult.of(count);
             } catch (IOException ex) {
                 return null;
             }
@@ -248,11 +846,17 @@ public class CustomRepository extends AbstractArtifactRepository implements Reso
         @Override
         public ExternalResourceReadResult<Void> withContent(Action<? super InputStream> action) throws ResourceException {
             try {
-                StreamedResource resource = getResource();
-                if (resource == null) throw ResourceExceptions.getMissing(uri);
-                CountingInputStream in = new CountingInputStream(resource.getStream());
-                action.execute(in);
-                resource.close();
+                ProducedResource produced = producer.get();
+                if (produced == null) throw ResourceExceptions.getMissing(uri);
+                StreamedResource resource = produced.open();
+                CountingInputStream in;
+                try {
+                    in = new CountingInputStream(resource.getStream());
+                    action.execute(in);
+                } finally {
+                    resource.close();
+                }
+                metrics.served(extension, in.getCount());
                 return ExternalResourceReadResult.of(in.getCount());
             } catch (IOException ex) {
                 throw ResourceExceptions.failure(uri, "Failed to write resource!", ex);
@@ -263,11 +867,18 @@ public class CustomRepository extends AbstractArtifactRepository implements Reso
         @Override
         public <T> ExternalResourceReadResult<T> withContentIfPresent(Transformer<? extends T, ? super InputStream> transformer) {
             try {
-                StreamedResource resource = getResource();
-                if (resource == null) return null;
-                CountingInputStream in = new CountingInputStream(resource.getStream());
-                T result = transformer.transform(in);
-                resource.close();
+                ProducedResource produced = producer.get();
+                if (produced == null) return null;
+                StreamedResource resource = produced.open();
+                CountingInputStream in;
+                T result;
+                try {
+                    in = new CountingInputStream(resource.getStream());
+                    result = transformer.transform(in);
+                } finally {
+                    resource.close();
+                }
+                metrics.served(extension, in.getCount());
                 return ExternalResourceReadResult.of(in.getCount(), result);
             } catch (IOException ex) {
                 return null;
@@ -278,11 +889,19 @@ public class CustomRepository extends AbstractArtifactRepository implements Reso
         @Override
         public <T> ExternalResourceReadResult<T> withContentIfPresent(ContentAction<? extends T> contentAction) {
             try {
-                StreamedResource resource = getResource();
-                if (resource == null) return null;
-                CountingInputStream in = new CountingInputStream(resource.getStream());
-                T result = contentAction.execute(in, getMetaData());
-                resource.close();
+                ProducedResource produced = producer.get();
+                if (produced == null) return null;
+                StreamedResource resource = produced.open();
+                CountingInputStream in;
+                T result;
+                try {
+                    in = new CountingInputStream(resource.getStream());
+                    // From what was just produced, since temporary contents are gone for anyone asking afterwards
+                    result = contentAction.execute(in, produced.getMetadata(uri));
+                } finally {
+                    resource.close();
+                }
+                metrics.served(extension, in.getCount());
                 return ExternalResourceReadResult.of(in.getCount(), result);
             } catch (IOException ex) {
                 return null;
@@ -304,9 +923,7 @@ public class CustomRepository extends AbstractArtifactRepository implements Reso
         @Override
         public ExternalResourceMetaData getMetaData() {
             try {
-                StreamedResource resource = getResource();
-                if (resource == null) return null;
-                return resource.getMetadata(uri);
+                return metadata.get();
             } catch (IOException ex) {
                 return null;
             }
@@ -314,12 +931,115 @@ public class CustomRepository extends AbstractArtifactRepository implements Reso
 
     }
 
+    /**
+     * Writes a resource into the store. The contents are written to a temporary file next to
+     * the target and moved into place once complete, so a partially written artifact is never visible.<br/>
+     * The contents are hashed as they are copied, so they are only read once. Downloads that were already
+     * verified against their declared SHA-1 are moved into the store as they are instead.
+     *
+     * @return The SHA-1 of the contents.
+     */
+    private static HashValue storeResource(StreamedResource resource, File target, HashValue hash) throws IOException {
+        if (resource instanceof StreamedResource.URLStreamedResource) {
+            File verified = ((StreamedResource.URLStreamedResource) resource).downloadVerified();
+            if (verified != null) {
+                moveIntoStore(verified, target, hash);
+                return hash;
+            }
+        }
+
+        File dir = target.getParentFile();
+        dir.mkdirs();
+        File tmp = File.createTempFile(target.getName(), ".tmp", dir);
+        try {
+            HashValue sha1;
+            try (HashingInputStream in = new HashingInputStream(resource.getStream());
+                 FileOutputStream out = new FileOutputStream(tmp)) {
+                IOUtils.copyLarge(in, out);
+                sha1 = in.getHash();
+            }
+            // Record the hash of the contents before making them visible, so metadata lookups never need to read them
+            writeSha1(target, sha1);
+            try {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException ex) {
+                // Someone else stored the same contents in the meantime, keep theirs
+            }
+            return sha1;
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Moves a file whose SHA-1 is already known into the store, without reading it again.<br/>
+     * Files on another file system are copied next to the target first, so the artifact still shows up all at once.
+     */
+    private static void moveIntoStore(File file, File target, HashValue sha1) throws IOException {
+        File dir = target.getParentFile();
+        dir.mkdirs();
+        try {
+            writeSha1(target, sha1);
+            try {
+                Files.move(file.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                File tmp = File.createTempFile(target.getName(), ".tmp", dir);
+                try {
+                    Files.copy(file.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    tmp.delete();
+                }
+            }
+        } catch (FileAlreadyExistsException ex) {
+            // Someone else stored the same contents in the meantime, keep theirs
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Gets the SHA-1 of the contents of a stored artifact, from its {@code .sha1} sidecar file.<br/>
+     * If the sidecar is missing, the hash is computed and the sidecar written for next time.
+     */
+    private static HashValue getStoredSha1(File artifact) throws IOException {
+        File sha1File = new File(artifact.getPath() + ".sha1");
+        if (sha1File.exists()) {
+            try {
+                return HashValue.parse(new String(Files.readAllBytes(sha1File.toPath()), StandardCharsets.UTF_8).trim());
+            } catch (RuntimeException ex) {
+                // Corrupt sidecar, fall through and recompute it
+            }
+        }
+        HashValue sha1 = HashUtil.sha1(artifact);
+        writeSha1(artifact, sha1);
+        return sha1;
+    }
+
+    private static void writeSha1(File artifact, HashValue sha1) throws IOException {
+        File sha1File = new File(artifact.getPath() + ".sha1");
+        File tmp = File.createTempFile(sha1File.getName(), ".tmp", sha1File.getParentFile());
+        Files.write(tmp.toPath(), sha1.asZeroPaddedHexString(40).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp.toPath(), sha1File.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * A resource the provider doesn't have, or couldn't tell whether it has because of a failure.<br/>
+     * Failures are thrown instead of reporting the resource as missing, so Gradle doesn't cache them as misses.
+     */
     private class NullExternalResource extends AbstractExternalResource {
 
         private final URI uri;
+        @Nullable
+        private final IOException failure;
 
-        private NullExternalResource(URI uri) {
+        private NullExternalResource(URI uri, @Nullable IOException failure) {
             this.uri = uri;
+            this.failure = failure;
+        }
+
+        private ResourceException unavailable() {
+            return failure != null ? ResourceExceptions.getFailed(uri, failure) : ResourceExceptions.getMissing(uri);
         }
 
         @Override
@@ -335,45 +1055,50 @@ public class CustomRepository extends AbstractArtifactRepository implements Reso
         @Nullable
         @Override
         public ExternalResourceReadResult<Void> writeToIfPresent(File destination) throws ResourceException {
+            if (failure != null) throw unavailable();
             return null;
         }
 
         @Override
         public ExternalResourceReadResult<Void> writeTo(OutputStream destination) throws ResourceException {
-            throw ResourceExceptions.getMissing(uri);
+            throw unavailable();
         }
 
         @Override
         public ExternalResourceReadResult<Void> withContent(Action<? super InputStream> readAction) throws ResourceException {
-            throw ResourceExceptions.getMissing(uri);
+            throw unavailable();
         }
 
         @Nullable
         @Override
         public <T> ExternalResourceReadResult<T> withContentIfPresent(Transformer<? extends T, ? super InputStream> readAction) {
+            if (failure != null) throw unavailable();
             return null;
         }
 
         @Nullable
         @Override
         public <T> ExternalResourceReadResult<T> withContentIfPresent(ContentAction<? extends T> readAction) {
+            if (failure != null) throw unavailable();
             return null;
         }
 
         @Override
         public ExternalResourceWriteResult put(ReadableContent source) throws ResourceException {
-            throw ResourceExceptions.getMissing(uri);
+            throw unavailable();
         }
 
         @Nullable
         @Override
         public List<String> list() {
+            if (failure != null) throw unavailable();
             return null;
         }
 
         @Nullable
         @Override
         public ExternalResourceMetaData getMetaData() {
+            if (failure != null) throw unavailable();
             return null;
         }
 
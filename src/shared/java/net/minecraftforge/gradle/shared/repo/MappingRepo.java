@@ -5,13 +5,12 @@ import net.minecraftforge.gradle.shared.mappings.MappingManagerImpl;
 import net.minecraftforge.gradle.shared.util.IOSupplier;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.ArtifactIdentifier;
-import org.gradle.api.artifacts.dsl.RepositoryHandler;
 
 public class MappingRepo {
 
-    public static CustomRepository add(Project project, MappingManagerImpl manager, String mcVersion, String name, Object url) {
-        RepositoryHandler handler = project.getRepositories();
-        return CustomRepository.add(handler, name, url, new ArtifactProvider(manager, mcVersion), null);
+    public static CustomRepository add(Project project, MappingManagerImpl manager, CustomRepository.ArtifactStore store,
+                                       String mcVersion, String name, Object url) {
+        return CustomRepository.add(project, name, url, new ArtifactProvider(manager, mcVersion), store);
     }
 
     private static class ArtifactProvider extends CustomRepository.ArtifactProvider.Simple {
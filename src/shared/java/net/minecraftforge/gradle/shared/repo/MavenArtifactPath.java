@@ -0,0 +1,85 @@
+package net.minecraftforge.gradle.shared.repo;
+
+import org.gradle.api.artifacts.ArtifactIdentifier;
+import org.gradle.api.internal.artifacts.DefaultArtifactIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
+
+import javax.annotation.Nullable;
+
+/**
+ * Parser and formatter for maven repository paths, of the form {@code /group/name/version/name-version[-classifier].extension}.<br/>
+ * Works by scanning the path backwards once, without regular expressions or intermediate arrays.
+ */
+public final class MavenArtifactPath {
+
+    private MavenArtifactPath() {
+    }
+
+    /**
+     * Parses a path into an artifact identifier.
+     *
+     * @return The identifier, or {@code null} if the path does not point to an artifact.
+     */
+    @Nullable
+    public static ArtifactIdentifier parse(String path) {
+        if (path.indexOf(' ') != -1) return null;
+
+        // Locate the last three slashes, which delimit the name, version and file name
+        int fileStart = path.lastIndexOf('/');
+        if (fileStart <= 0) return null;
+        int versionStart = path.lastIndexOf('/', fileStart - 1);
+        if (versionStart <= 0) return null;
+        int nameStart = path.lastIndexOf('/', versionStart - 1);
+        if (nameStart <= 1 || path.charAt(0) != '/') return null;
+
+        int nameLength = versionStart - nameStart - 1;
+        int versionLength = fileStart - versionStart - 1;
+        if (nameLength == 0 || versionLength == 0) return null;
+
+        // The file name must start with "name-version"
+        int pos = fileStart + 1;
+        if (!path.regionMatches(pos, path, nameStart + 1, nameLength)) return null;
+        pos += nameLength;
+        if (pos >= path.length() || path.charAt(pos) != '-') return null;
+        pos++;
+        if (!path.regionMatches(pos, path, versionStart + 1, versionLength)) return null;
+        pos += versionLength;
+        if (pos >= path.length()) return null;
+
+        // Followed by an optional classifier, which runs until the first dot
+        String classifier = null;
+        if (path.charAt(pos) == '-') {
+            int dot = path.indexOf('.', pos + 1);
+            if (dot == -1 || dot == pos + 1) return null;
+            classifier = path.substring(pos + 1, dot);
+            pos = dot;
+        }
+
+        // And the extension, which is everything after that
+        if (path.charAt(pos) != '.' || pos + 1 == path.length()) return null;
+        String extension = path.substring(pos + 1);
+
+        String group = path.substring(1, nameStart).replace('/', '.');
+        String name = path.substring(nameStart + 1, versionStart);
+        String version = path.substring(versionStart + 1, fileStart);
+
+        return new DefaultArtifactIdentifier(new DefaultModuleVersionIdentifier(group, name, version), name, extension, extension, classifier);
+    }
+
+    /**
+     * Formats an artifact identifier into its path, relative to the root of a maven repository.
+     */
+    public static String format(ArtifactIdentifier identifier) {
+        String name = identifier.getModuleVersionIdentifier().getName();
+        String version = identifier.getModuleVersionIdentifier().getVersion();
+        StringBuilder sb = new StringBuilder();
+        sb.append(identifier.getModuleVersionIdentifier().getGroup().replace('.', '/'))
+                .append('/').append(name).append('/').append(version)
+                .append('/').append(name).append('-').append(version);
+        if (identifier.getClassifier() != null) {
+            sb.append('-').append(identifier.getClassifier());
+        }
+        return sb.append('.').append(identifier.getExtension()).toString();
+    }
+
+}
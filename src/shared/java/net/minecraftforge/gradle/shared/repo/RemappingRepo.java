@@ -4,9 +4,9 @@ import net.minecraftforge.gradle.api.mapping.MappingVersion;
 import net.minecraftforge.gradle.shared.mappings.Remapper;
 import net.minecraftforge.gradle.shared.util.DependencyResolver;
 import net.minecraftforge.gradle.shared.util.IOSupplier;
+import net.minecraftforge.gradle.shared.util.Util;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.ArtifactIdentifier;
-import org.gradle.api.artifacts.dsl.RepositoryHandler;
 import org.gradle.internal.Pair;
 import org.gradle.internal.hash.HashValue;
 import org.gradle.internal.impldep.com.beust.jcommander.internal.Maps;
@@ -16,6 +16,7 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
+import javax.annotation.Nullable;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -28,6 +29,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,13 +38,12 @@ public class RemappingRepo {
 
     private static final Pattern PATTERN_MAPPING = Pattern.compile("^remap\\.(?<mapping>[^.]+)\\.(?<group>.*)$");
 
-    public static CustomRepository add(Project project, DependencyResolver dependencyResolver, String provider, String channel,
-                                       String version, String mcVersion, String name, Object url) {
-        RepositoryHandler handler = project.getRepositories();
-        return CustomRepository.add(handler, name, url, new ArtifactProvider(dependencyResolver, provider, channel, version, mcVersion), null);
+    public static CustomRepository add(Project project, DependencyResolver dependencyResolver, CustomRepository.ArtifactStore store,
+                                       String provider, String channel, String version, String mcVersion, String name, Object url) {
+        return CustomRepository.add(project, name, url, new ArtifactProvider(dependencyResolver, provider, channel, version, mcVersion), store);
     }
 
-    private static class ArtifactProvider implements CustomRepository.ArtifactProvider {
+    private static class ArtifactProvider implements CustomRepository.ArtifactProvider.Async {
 
         private final DependencyResolver dependencyResolver;
         private final String provider, channel, version, mcVersion;
@@ -55,35 +57,64 @@ public class RemappingRepo {
         }
 
         @Override
-        public IOSupplier<StreamedResource> getArtifact(ArtifactIdentifier identifier) throws IOException {
+        public CompletableFuture<StreamedResource> getArtifactAsync(ArtifactIdentifier identifier, Executor executor) {
             String group = identifier.getModuleVersionIdentifier().getGroup();
             Matcher matcher = PATTERN_MAPPING.matcher(group);
-            if (!matcher.matches()) return null;
+            if (!matcher.matches()) return CompletableFuture.completedFuture(null);
 
-            String mappingName = matcher.group("mapping");
-            String newGroup = matcher.group("group");
+            CompletableFuture<Set<File>> files = resolveOriginal(identifier, matcher.group("group"), executor);
 
-            Set<File> files = dependencyResolver.resolveDependency(Maps.newHashMap(
-                    "group", newGroup,
+            if (identifier.getExtension().equals("pom")) {
+                return files.thenApply(f -> {
+                    if (f.isEmpty()) return null;
+                    try {
+                        return fixPOM(f.iterator().next(), group).get();
+                    } catch (IOException | SAXException | ParserConfigurationException | TransformerException ex) {
+                        return null;
+                    }
+                });
+            }
+
+            // Resolve the mapping while the original artifact is being resolved
+            CompletableFuture<File> mappingFile = resolveMapping(matcher.group("mapping"), executor);
+
+            return files.thenCombine(mappingFile, (f, m) -> {
+                if (f.isEmpty()) return null;
+                Pair<IOSupplier<File>, HashValue> remapped = Remapper.lazyRemapTmp(m, f.iterator().next());
+                return StreamedResource.ofFileSupplier(remapped.getLeft()).withHash(remapped.getRight()).deleteOnClose();
+            });
+        }
+
+        /**
+         * Gets the hash of a remapped artifact from the original artifact and the mapping, without remapping anything.
+         */
+        @Nullable
+        @Override
+        public HashValue getHash(ArtifactIdentifier identifier) throws IOException {
+            Matcher matcher = PATTERN_MAPPING.matcher(identifier.getModuleVersionIdentifier().getGroup());
+            if (!matcher.matches() || identifier.getExtension().equals("pom")) return null;
+
+            Executor executor = CustomRepository.getExecutor();
+            CompletableFuture<Set<File>> files = resolveOriginal(identifier, matcher.group("group"), executor);
+            CompletableFuture<File> mappingFile = resolveMapping(matcher.group("mapping"), executor);
+            Set<File> f = Util.join(files);
+            return f.isEmpty() ? null : Remapper.getRemappedHash(Util.join(mappingFile), f.iterator().next());
+        }
+
+        private CompletableFuture<Set<File>> resolveOriginal(ArtifactIdentifier identifier, String group, Executor executor) {
+            return Util.supplyAsync(() -> dependencyResolver.resolveDependency(Maps.newHashMap(
+                    "group", group,
                     "name", identifier.getModuleVersionIdentifier().getName(),
                     "version", identifier.getModuleVersionIdentifier().getVersion(),
                     "classifier", identifier.getClassifier(),
                     "ext", identifier.getExtension(),
                     "transitive", false
-            ));
-            if (files.isEmpty()) return null;
-
-            if (identifier.getExtension().equals("pom")) {
-                try {
-                    return fixPOM(files.iterator().next(), group);
-                } catch (SAXException | ParserConfigurationException | TransformerException ex) {
-                    return null;
-                }
-            }
+            )), executor);
+        }
 
+        private CompletableFuture<File> resolveMapping(String mappingName, Executor executor) {
             MappingVersion mapping = new MappingVersion(provider, channel, version, mcVersion, mappingName);
-            Pair<IOSupplier<byte[]>, HashValue> remapped = Remapper.lazyRemapBytes(dependencyResolver, mapping, files.iterator().next());
-            return () -> StreamedResource.ofByteSupplier(remapped.getLeft()).withHash(remapped.getRight());
+            return Util.supplyAsync(() -> dependencyResolver.resolveDependency(mapping.asMavenArtifactName()).iterator().next(), executor);
         }
 
         private IOSupplier<StreamedResource> fixPOM(File pomFile, String group) throws IOException, SAXException, ParserConfigurationException, TransformerException {
@@ -0,0 +1,201 @@
+package net.minecraftforge.gradle.shared.repo;
+
+import org.gradle.api.Project;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.impldep.com.google.gson.GsonBuilder;
+import org.gradle.internal.impldep.com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects resolution metrics for every {@link CustomRepository} in a build, per repository and per extension,
+ * and writes them to {@code build/reports/forgegradle/resolution-metrics.json} in the root project once the build finishes.
+ */
+public class ResolutionMetrics {
+
+    private static final Logger LOGGER = Logging.getLogger(ResolutionMetrics.class);
+    // The metrics of every build that's running, which are dropped once the build finishes
+    private static final Map<Gradle, ResolutionMetrics> BUILDS = new WeakHashMap<>();
+    // Upper bounds of the production latency histogram buckets, in milliseconds
+    private static final long[] LATENCY_BUCKETS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000};
+
+    /**
+     * Gets the metrics of the build the specified project belongs to, creating them if needed.<br/>
+     * The report is written once the build finishes, by a single listener no matter how many repositories there are.
+     */
+    public static ResolutionMetrics get(Project project) {
+        Gradle gradle = project.getGradle();
+        synchronized (BUILDS) {
+            ResolutionMetrics metrics = BUILDS.get(gradle);
+            if (metrics == null) {
+                ResolutionMetrics created = metrics = new ResolutionMetrics(new File(project.getRootProject().getBuildDir(),
+                        "reports/forgegradle/resolution-metrics.json"));
+                BUILDS.put(gradle, created);
+                gradle.buildFinished(result -> {
+                    synchronized (BUILDS) {
+                        BUILDS.remove(gradle);
+                    }
+                    created.writeReport();
+                });
+            }
+            return metrics;
+        }
+    }
+
+    private final File report;
+    private final Map<String, Repository> repositories = new ConcurrentHashMap<>();
+
+    private ResolutionMetrics(File report) {
+        this.report = report;
+    }
+
+    public Repository forRepository(String name) {
+        return repositories.computeIfAbsent(name, $ -> new Repository());
+    }
+
+    /**
+     * Writes the report, if anything was resolved through a custom repository during the build.<br/>
+     * Failing to write it is only logged, since it's no reason to fail a build that otherwise succeeded.
+     */
+    public void writeReport() {
+        JsonObject json = new JsonObject();
+        JsonObject repos = new JsonObject();
+        new TreeMap<>(repositories).forEach((name, repo) -> {
+            if (repo.total.requests.sum() != 0) repos.add(name, repo.toJson());
+        });
+        if (repos.entrySet().isEmpty()) return;
+        json.add("repositories", repos);
+
+        try {
+            report.getParentFile().mkdirs();
+            try (Writer writer = Files.newBufferedWriter(report.toPath(), StandardCharsets.UTF_8)) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(json, writer);
+            }
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warn("Failed to write resolution metrics to " + report, ex);
+        }
+    }
+
+    /**
+     * Metrics of a single repository, as a whole and for each requested extension.
+     */
+    public static class Repository {
+
+        private final Stats total = new Stats();
+        private final Map<String, Stats> extensions = new ConcurrentHashMap<>();
+
+        private Repository() {
+        }
+
+        private Stats get(String extension) {
+            return extensions.computeIfAbsent(extension, $ -> new Stats());
+        }
+
+        public void request(String extension) {
+            total.requests.increment();
+            get(extension).requests.increment();
+        }
+
+        public void hit(String extension) {
+            total.hits.increment();
+            get(extension).hits.increment();
+        }
+
+        public void miss(String extension) {
+            total.misses.increment();
+            get(extension).misses.increment();
+        }
+
+        public void storeHit(String extension) {
+            total.storeHits.increment();
+            get(extension).storeHits.increment();
+        }
+
+        public void served(String extension, long bytes) {
+            total.bytesServed.add(bytes);
+            get(extension).bytesServed.add(bytes);
+        }
+
+        public void produced(String extension, long nanos) {
+            total.production.record(nanos);
+            get(extension).production.record(nanos);
+        }
+
+        private JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.add("total", total.toJson());
+            JsonObject exts = new JsonObject();
+            new TreeMap<>(extensions).forEach((ext, stats) -> exts.add(ext, stats.toJson()));
+            json.add("extensions", exts);
+            return json;
+        }
+
+    }
+
+    private static class Stats {
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder storeHits = new LongAdder();
+        private final LongAdder bytesServed = new LongAdder();
+        private final Histogram production = new Histogram();
+
+        private JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("requests", requests.sum());
+            json.addProperty("hits", hits.sum());
+            json.addProperty("misses", misses.sum());
+            json.addProperty("storeHits", storeHits.sum());
+            json.addProperty("bytesServed", bytesServed.sum());
+            json.add("production", production.toJson());
+            return json;
+        }
+
+    }
+
+    private static class Histogram {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(LATENCY_BUCKETS.length + 1);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        private void record(long nanos) {
+            long millis = nanos / 1000000;
+            int bucket = 0;
+            while (bucket < LATENCY_BUCKETS.length && millis > LATENCY_BUCKETS[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+            count.increment();
+            totalNanos.add(nanos);
+        }
+
+        private JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("count", count.sum());
+            json.addProperty("totalMillis", totalNanos.sum() / 1000000);
+            JsonObject histogram = new JsonObject();
+            for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+                histogram.addProperty("<=" + LATENCY_BUCKETS[i] + "ms", buckets.get(i));
+            }
+            histogram.addProperty(">" + LATENCY_BUCKETS[LATENCY_BUCKETS.length - 1] + "ms", buckets.get(LATENCY_BUCKETS.length));
+            json.add("histogram", histogram);
+            return json;
+        }
+
+    }
+
+}
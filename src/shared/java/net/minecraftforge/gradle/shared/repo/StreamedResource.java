@@ -1,6 +1,10 @@
 package net.minecraftforge.gradle.shared.repo;
 
+import net.minecraftforge.gradle.shared.util.DownloadManager;
+import net.minecraftforge.gradle.shared.util.HashingInputStream;
+import net.minecraftforge.gradle.shared.util.HttpFetcher;
 import net.minecraftforge.gradle.shared.util.IOSupplier;
+import net.minecraftforge.gradle.shared.util.MirrorSet;
 import org.gradle.internal.hash.HashUtil;
 import org.gradle.internal.hash.HashValue;
 import org.gradle.internal.resource.metadata.DefaultExternalResourceMetaData;
@@ -9,11 +13,16 @@ import org.gradle.internal.resource.metadata.ExternalResourceMetaData;
 import javax.annotation.Nullable;
 import java.io.ByteArrayInputStream;
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
-import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.function.Supplier;
 
 /**
@@ -35,39 +44,114 @@ public interface StreamedResource extends Closeable {
         return new ByteArrayStreamedResource(supplier);
     }
 
+    static FileStreamedResource ofFile(File file) {
+        return new FileStreamedResource(() -> file);
+    }
+
+    static FileStreamedResource ofFileSupplier(IOSupplier<File> supplier) {
+        return new FileStreamedResource(supplier);
+    }
+
     InputStream getStream() throws IOException;
 
     ExternalResourceMetaData getMetadata(URI uri);
 
+    /**
+     * Gets the SHA-1 that was declared for this resource up front, without producing its contents.<br/>
+     * For generated artifacts this may be a hash of the inputs rather than of the contents themselves,
+     * but two resources for the same artifact with the same hash <b>must</b> have the same contents.
+     */
+    @Nullable
+    HashValue getHash();
+
     @Override
     void close() throws IOException;
 
+    /**
+     * A resource downloaded from a URL.<br/>
+     * HTTP downloads go through the {@link DownloadManager}, so they are retried and resumed as needed.
+     * Either way, the declared hash and length are verified, so a corrupt download fails instead of making it into any cache.
+     */
     class URLStreamedResource implements StreamedResource {
 
-        private final URLConnection connection;
+        private final URL url;
         private final long length;
         @Nullable
         private final HashValue hash;
+        @Nullable
+        private MirrorSet mirrors;
+        private File download;
+        private InputStream stream;
 
         private URLStreamedResource(URL url, long length, @Nullable HashValue hash) throws IOException {
-            this.connection = url.openConnection();
+            this.url = url;
             this.hash = hash;
-            this.length = length != -1 ? length : this.connection.getContentLengthLong();
+            this.length = length;
+        }
+
+        /**
+         * Allows the resource to be downloaded from any of the given mirrors, if its URL is under one of them.
+         */
+        public URLStreamedResource withMirrors(MirrorSet mirrors) {
+            this.mirrors = mirrors;
+            return this;
         }
 
         @Override
         public InputStream getStream() throws IOException {
-            return connection.getInputStream();
+            if (stream == null) {
+                if (DownloadManager.isHttp(url)) {
+                    // Verified already
+                    download = mirrors != null ? mirrors.download(url, length, hash) : DownloadManager.getDefault().download(url, length, hash);
+                    stream = Files.newInputStream(download.toPath());
+                } else {
+                    stream = new HashingInputStream(HttpFetcher.openStream(url), hash, length, url.toString());
+                }
+            }
+            return stream;
+        }
+
+        /**
+         * Downloads the resource into a file that's already verified against its declared SHA-1, which the caller then owns.<br/>
+         * This saves copying and hashing the contents again, when all that's needed is to keep them somewhere.
+         *
+         * @return The file, or {@code null} if the resource isn't downloaded over HTTP, has no declared hash or was already opened.
+         */
+        @Nullable
+        public File downloadVerified() throws IOException {
+            if (hash == null || stream != null || !DownloadManager.isHttp(url)) return null;
+            return mirrors != null ? mirrors.download(url, length, hash) : DownloadManager.getDefault().download(url, length, hash);
         }
 
         @Override
         public ExternalResourceMetaData getMetadata(URI uri) {
-            return new DefaultExternalResourceMetaData(uri, null, length, null, null, hash);
+            return new DefaultExternalResourceMetaData(uri, null, length, null, null, hash) {
+                @Override
+                public long getContentLength() {
+                    if (length != -1) return length;
+                    try {
+                        return DownloadManager.getDefault().getContentLength(url); // Only ask the server if we have to
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            };
+        }
+
+        @Nullable
+        @Override
+        public HashValue getHash() {
+            return hash;
         }
 
         @Override
         public void close() throws IOException {
-            getStream().close();
+            if (stream != null) {
+                stream.close();
+            }
+            if (download != null) {
+                download.delete();
+            }
         }
 
     }
@@ -76,6 +160,7 @@ public interface StreamedResource extends Closeable {
 
         private final Supplier<byte[]> byteSupplier;
         private HashValue hash;
+        private HashValue contentHash;
         private InputStream stream;
 
         private ByteArrayStreamedResource(IOSupplier<byte[]> byteSupplier) {
@@ -122,11 +207,19 @@ public interface StreamedResource extends Closeable {
                 @Nullable
                 @Override
                 public HashValue getSha1() {
-                    return hash != null ? hash : HashUtil.sha1(getBytes());
+                    if (hash != null) return hash;
+                    if (contentHash == null) contentHash = HashUtil.sha1(getBytes()); // Only hash the contents once
+                    return contentHash;
                 }
             };
         }
 
+        @Nullable
+        @Override
+        public HashValue getHash() {
+            return hash;
+        }
+
         @Override
         public void close() throws IOException {
             if (stream != null) {
@@ -136,4 +229,111 @@ public interface StreamedResource extends Closeable {
 
     }
 
+    /**
+     * A resource backed by a file on disk.<br/>
+     * The contents are never loaded into memory: streams read straight from a {@link FileChannel}
+     * and {@link #transferTo(WritableByteChannel)} lets the OS copy the bytes to the target.
+     */
+    class FileStreamedResource implements StreamedResource {
+
+        private final IOSupplier<File> fileSupplier;
+        private File file;
+        private HashValue hash;
+        private HashValue contentHash;
+        private boolean deleteOnClose = false;
+        private FileChannel channel;
+
+        private FileStreamedResource(IOSupplier<File> fileSupplier) {
+            this.fileSupplier = fileSupplier;
+        }
+
+        public FileStreamedResource withHash(HashValue hash) {
+            this.hash = hash;
+            return this;
+        }
+
+        /**
+         * Marks the backing file as temporary, deleting it once this resource is closed.
+         */
+        public FileStreamedResource deleteOnClose() {
+            this.deleteOnClose = true;
+            return this;
+        }
+
+        public File getFile() throws IOException {
+            if (file == null) file = fileSupplier.get();
+            return file;
+        }
+
+        private FileChannel getChannel() throws IOException {
+            if (channel == null) channel = FileChannel.open(getFile().toPath(), StandardOpenOption.READ);
+            return channel;
+        }
+
+        @Override
+        public InputStream getStream() throws IOException {
+            return Channels.newInputStream(getChannel());
+        }
+
+        /**
+         * Copies the whole file into the target channel, without going through the heap
+         * if the platform supports it.
+         *
+         * @return The amount of bytes that were transferred.
+         */
+        public long transferTo(WritableByteChannel target) throws IOException {
+            FileChannel channel = getChannel();
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+            return position;
+        }
+
+        @Override
+        public ExternalResourceMetaData getMetadata(URI uri) {
+            return new DefaultExternalResourceMetaData(uri, 0, 0) {
+                @Override
+                public long getContentLength() {
+                    try {
+                        return getFile().length();
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+
+                @Nullable
+                @Override
+                public HashValue getSha1() {
+                    if (hash != null) return hash;
+                    try {
+                        if (contentHash == null) contentHash = HashUtil.sha1(getFile()); // Streamed from disk, only once
+                        return contentHash;
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            };
+        }
+
+        @Nullable
+        @Override
+        public HashValue getHash() {
+            return hash;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+            if (deleteOnClose && file != null) {
+                file.delete();
+            }
+        }
+
+    }
+
 }
@@ -0,0 +1,205 @@
+package net.minecraftforge.gradle.shared.tasks;
+
+import com.google.common.base.Preconditions;
+import net.minecraftforge.gradle.shared.impl.AssetIndex;
+import net.minecraftforge.gradle.shared.impl.MCLauncherArtifactProvider;
+import net.minecraftforge.gradle.shared.util.DownloadManager;
+import net.minecraftforge.gradle.shared.util.MirrorSet;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.internal.hash.HashUtil;
+import org.gradle.internal.hash.HashValue;
+import org.gradle.internal.impldep.com.google.gson.JsonObject;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Task that downloads the assets of a Minecraft version into an object store shared by all projects.<br/>
+ * The store has the same layout as the launcher's ({@code indexes/<id>.json} and {@code objects/<xx>/<hash>}),
+ * objects that are already in it are skipped, and everything else is downloaded concurrently and verified as it streams in.
+ * Downloads go through the mirrors of the launcher provider, so mirrors added in {@code minecraftMaven} are used too.
+ */
+public class DownloadAssetsTask extends DefaultTask {
+
+    private String version;
+    private File assetsDir;
+    private int parallelism = 16;
+    @Nullable
+    private MCLauncherArtifactProvider launcher;
+
+    public DownloadAssetsTask() {
+        this.assetsDir = new File(getProject().getGradle().getGradleUserHomeDir(), "caches/forgegradle/assets");
+    }
+
+    @TaskAction
+    public void download() throws IOException, InterruptedException {
+        Preconditions.checkNotNull(version, "Minecraft version is not defined!");
+
+        MCLauncherArtifactProvider launcher = getLauncher();
+        JsonObject indexInfo = launcher.getAssetIndexDownload(version);
+        Preconditions.checkState(indexInfo != null, "Could not find the asset index of Minecraft " + version + "!");
+
+        DownloadManager downloads = new DownloadManager(new File(assetsDir, "tmp"), parallelism, 5, 500);
+
+        // Get the index itself, unless we already have it
+        File indexFile = getIndexFile(indexInfo.get("id").getAsString());
+        HashValue indexHash = HashValue.parse(indexInfo.get("sha1").getAsString());
+        if (!indexFile.exists() || !HashUtil.sha1(indexFile).equals(indexHash)) {
+            long indexSize = indexInfo.get("size").getAsLong();
+            File tmp = launcher.getLauncherMirrors().fetch(new URL(indexInfo.get("url").getAsString()),
+                    url -> downloads.download(url, indexSize, indexHash), File::delete);
+            store(tmp, indexFile, true);
+        }
+        AssetIndex index = AssetIndex.read(indexFile);
+
+        // Then every object that's missing
+        MirrorSet mirrors = launcher.getAssetMirrors();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "ForgeGradle asset downloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (AssetIndex.Asset asset : index.getObjects()) {
+                File target = new File(getObjectsDir(), asset.getPath());
+                if (target.exists() && target.length() == asset.getSize()) continue; // Stored by hash, so it must be right
+
+                futures.add(executor.submit(() -> {
+                    File tmp = mirrors.fetch(new URL(mirrors.getPrimary() + asset.getPath()),
+                            url -> downloads.download(url, asset.getSize(), asset.getSha1()), File::delete);
+                    store(tmp, target, false);
+                    return null;
+                }));
+            }
+
+            IOException failure = null;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    IOException cause = ex.getCause() instanceof IOException ? (IOException) ex.getCause() : new IOException(ex.getCause());
+                    if (failure == null) failure = cause;
+                    else failure.addSuppressed(cause);
+                }
+            }
+            if (failure != null) throw failure;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        getLogger().lifecycle("Downloaded {} of {} asset objects for Minecraft {}", futures.size(), index.getObjects().size(), version);
+    }
+
+    /**
+     * Moves a verified download into the store.
+     */
+    private static void store(File tmp, File target, boolean replace) throws IOException {
+        target.getParentFile().mkdirs();
+        try {
+            if (replace) {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (FileAlreadyExistsException ex) {
+            // Someone else stored the same object in the meantime
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Gets the launcher provider whose manifests and mirrors are used, which is one with the default mirrors if none was set.
+     */
+    private MCLauncherArtifactProvider getLauncher() {
+        if (launcher == null) {
+            launcher = new MCLauncherArtifactProvider(new File(getProject().getGradle().getGradleUserHomeDir(), "caches/forgegradle/manifests"),
+                    getProject().getGradle().getStartParameter().isOffline());
+        }
+        return launcher;
+    }
+
+    private File getIndexFile(String id) {
+        return new File(getIndexesDir(), id + ".json");
+    }
+
+    @Input
+    public String getVersion() {
+        return version;
+    }
+
+    @Internal
+    public File getAssetsDir() {
+        return assetsDir;
+    }
+
+    @Internal
+    public File getIndexesDir() {
+        return new File(assetsDir, "indexes");
+    }
+
+    /**
+     * Gets the asset index of the version, which lists the objects to download.<br/>
+     * This task downloads it as well, so it's only an input once it's there.
+     */
+    @InputFile
+    @Optional
+    @Nullable
+    public File getIndexFile() {
+        if (version == null) return null;
+        JsonObject indexInfo;
+        try {
+            indexInfo = getLauncher().getAssetIndexDownload(version);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        if (indexInfo == null) return null;
+        File indexFile = getIndexFile(indexInfo.get("id").getAsString());
+        return indexFile.exists() ? indexFile : null;
+    }
+
+    @OutputDirectory
+    public File getObjectsDir() {
+        return new File(assetsDir, "objects");
+    }
+
+    public void version(String version) {
+        this.version = version;
+    }
+
+    public void assetsDir(File assetsDir) {
+        this.assetsDir = assetsDir;
+    }
+
+    public void assetsDir(String assetsDir) {
+        assetsDir(getProject().file(assetsDir));
+    }
+
+    public void launcher(MCLauncherArtifactProvider launcher) {
+        this.launcher = launcher;
+    }
+
+    public void parallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+}
@@ -0,0 +1,273 @@
+package net.minecraftforge.gradle.shared.tasks;
+
+import com.google.common.base.Preconditions;
+import net.minecraftforge.gradle.shared.impl.MCLauncherArtifactProvider;
+import net.minecraftforge.gradle.shared.repo.CustomRepository;
+import net.minecraftforge.gradle.shared.repo.MavenArtifactPath;
+import net.minecraftforge.gradle.shared.util.DownloadManager;
+import net.minecraftforge.gradle.shared.util.MirrorSet;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.artifacts.ArtifactIdentifier;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.internal.impldep.org.apache.commons.io.FileUtils;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Task that extracts the native libraries of a Minecraft version for this platform.<br/>
+ * Every natives jar is extracted into a directory named after its hash, in a cache shared by all projects and
+ * Minecraft versions, so each jar is only ever unpacked once. The directories can then be put on the
+ * {@code java.library.path} as they are, through {@link #getLibraryPath()}.<br/>
+ * The directories used by a version are listed in its own subdirectory of the cache, which is all this task declares as
+ * its output, so it stays up-to-date for as long as those directories are there.<br/>
+ * The jars are taken from the artifact store if they're in it, and downloaded through the library mirrors into it otherwise.
+ */
+public class ExtractNativesTask extends DefaultTask {
+
+    private String version;
+    private File cachesRoot;
+    private File nativesDir;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    @Nullable
+    private MCLauncherArtifactProvider launcher;
+    @Nullable
+    private CustomRepository.ArtifactStore store;
+
+    private final List<File> directories = new ArrayList<>();
+
+    public ExtractNativesTask() {
+        this.cachesRoot = new File(getProject().getGradle().getGradleUserHomeDir(), "caches");
+        this.nativesDir = new File(cachesRoot, "forgegradle/natives");
+        getOutputs().upToDateWhen(task -> getNativeDirectories().stream().allMatch(File::isDirectory));
+    }
+
+    @TaskAction
+    public void extract() throws IOException, InterruptedException {
+        Preconditions.checkNotNull(version, "Minecraft version is not defined!");
+
+        MCLauncherArtifactProvider launcher = getLauncher();
+        List<MCLauncherArtifactProvider.Natives> natives = launcher.getNatives(version);
+        // Downloaded next to the store, so they can be moved into it
+        DownloadManager downloads = new DownloadManager(new File(cachesRoot, "forgegradle/tmp"), 4, 5, 500);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+            Thread thread = new Thread(r, "ForgeGradle natives extractor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<File>> futures = new ArrayList<>();
+        try {
+            for (MCLauncherArtifactProvider.Natives jar : natives) {
+                futures.add(executor.submit(() -> extract(jar, launcher.getLibraryMirrors(), downloads)));
+            }
+
+            directories.clear();
+            IOException failure = null;
+            for (Future<File> future : futures) {
+                try {
+                    directories.add(future.get());
+                } catch (ExecutionException ex) {
+                    IOException cause = ex.getCause() instanceof IOException ? (IOException) ex.getCause() : new IOException(ex.getCause());
+                    if (failure == null) failure = cause;
+                    else failure.addSuppressed(cause);
+                }
+            }
+            if (failure != null) throw failure;
+
+            File listing = getListingFile();
+            listing.getParentFile().mkdirs();
+            Files.write(listing.toPath(), getLibraryPath().getBytes(StandardCharsets.UTF_8));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Extracts a natives jar into the cache, unless it's already there.
+     *
+     * @return The directory the jar was extracted into.
+     */
+    private File extract(MCLauncherArtifactProvider.Natives natives, MirrorSet mirrors, DownloadManager downloads) throws IOException {
+        File target = new File(nativesDir, natives.getSha1().asZeroPaddedHexString(40));
+        if (target.isDirectory()) return target;
+
+        // Extract into a temporary directory and move it into place once complete, so a partial extraction is never used
+        nativesDir.mkdirs();
+        File jar = getJar(natives, mirrors, downloads);
+        File tmp = Files.createTempDirectory(nativesDir.toPath(), target.getName() + ".tmp").toFile();
+        try (ZipFile zip = new ZipFile(jar)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory() || isExcluded(entry.getName(), natives.getExcludes())) continue;
+
+                File file = new File(tmp, entry.getName());
+                if (!file.toPath().normalize().startsWith(tmp.toPath())) {
+                    throw new IOException("Entry is outside of the target directory: " + entry.getName());
+                }
+                file.getParentFile().mkdirs();
+                try (InputStream in = zip.getInputStream(entry)) {
+                    Files.copy(in, file.toPath());
+                }
+            }
+            if (!tmp.renameTo(target) && !target.isDirectory()) {
+                throw new IOException("Failed to move extracted natives into " + target);
+            }
+        } finally {
+            if (!jar.equals(getStoredJar(natives))) jar.delete();
+            if (tmp.exists()) FileUtils.deleteDirectory(tmp); // Someone else extracted the same jar in the meantime
+        }
+        return target;
+    }
+
+    /**
+     * Gets a natives jar from the artifact store, downloading it into the store if it isn't there yet.<br/>
+     * Without a store, the jar is downloaded into a temporary file.
+     */
+    private File getJar(MCLauncherArtifactProvider.Natives natives, MirrorSet mirrors, DownloadManager downloads) throws IOException {
+        File stored = getStoredJar(natives);
+        if (stored != null && stored.exists()) return stored;
+
+        File jar = mirrors.fetch(natives.getURL(), url -> downloads.download(url, natives.getSize(), natives.getSha1()), File::delete);
+        if (stored == null) return jar;
+        stored.getParentFile().mkdirs();
+        try {
+            // The store writes the .sha1 sidecar itself the first time it looks at it
+            Files.move(jar.toPath(), stored.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException ex) {
+            // Someone else stored the same jar in the meantime, keep theirs
+            jar.delete();
+        }
+        return stored;
+    }
+
+    @Nullable
+    private File getStoredJar(MCLauncherArtifactProvider.Natives natives) {
+        if (store == null) return null;
+        ArtifactIdentifier identifier = MavenArtifactPath.parse(natives.getURL().getPath());
+        if (identifier == null) return null;
+        return store.getArtifactPath(cachesRoot, identifier, natives.getSha1());
+    }
+
+    private static boolean isExcluded(String name, List<String> excludes) {
+        for (String exclude : excludes) {
+            if (name.startsWith(exclude)) return true;
+        }
+        return false;
+    }
+
+    private File getListingFile() {
+        return new File(getVersionDir(), "directories.txt");
+    }
+
+    /**
+     * Gets the directories the natives were extracted into. Only available once the task has run or is up-to-date.
+     */
+    @Internal
+    public List<File> getNativeDirectories() {
+        if (directories.isEmpty() && version != null) {
+            File listing = getListingFile();
+            if (listing.isFile()) {
+                try {
+                    String path = new String(Files.readAllBytes(listing.toPath()), StandardCharsets.UTF_8);
+                    for (String directory : path.split(Pattern.quote(File.pathSeparator))) {
+                        if (!directory.isEmpty()) directories.add(new File(directory));
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        }
+        return Collections.unmodifiableList(directories);
+    }
+
+    /**
+     * Gets the natives directories as a {@code java.library.path}. Only available once the task has run.
+     */
+    @Internal
+    public String getLibraryPath() {
+        return getNativeDirectories().stream().map(File::getAbsolutePath).collect(Collectors.joining(File.pathSeparator));
+    }
+
+    /**
+     * Gets the launcher provider whose manifests and mirrors are used, which is one with the default mirrors if none was set.
+     */
+    private MCLauncherArtifactProvider getLauncher() {
+        if (launcher == null) {
+            launcher = new MCLauncherArtifactProvider(new File(cachesRoot, "forgegradle/manifests"),
+                    getProject().getGradle().getStartParameter().isOffline());
+        }
+        return launcher;
+    }
+
+    @Input
+    public String getVersion() {
+        return version;
+    }
+
+    @Internal
+    public File getCachesRoot() {
+        return cachesRoot;
+    }
+
+    @Internal
+    public File getNativesDir() {
+        return nativesDir;
+    }
+
+    /**
+     * Gets the subdirectory of the shared cache that lists the natives directories of the version.
+     */
+    @OutputDirectory
+    public File getVersionDir() {
+        return new File(nativesDir, "versions/" + version);
+    }
+
+    public void version(String version) {
+        this.version = version;
+    }
+
+    public void nativesDir(File nativesDir) {
+        this.nativesDir = nativesDir;
+    }
+
+    public void nativesDir(String nativesDir) {
+        nativesDir(getProject().file(nativesDir));
+    }
+
+    public void launcher(MCLauncherArtifactProvider launcher) {
+        this.launcher = launcher;
+    }
+
+    public void store(CustomRepository.ArtifactStore store) {
+        this.store = store;
+    }
+
+    public void parallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+}
@@ -63,11 +63,28 @@ public class DependencyResolver {
         }
 
         // No other thread is resolving this dep and we've claimed it, so let's go!
+        // The configuration container isn't thread-safe, but resolving the configuration itself is
         int currentID = counter.getAndIncrement();
-        Configuration cfg = project.getConfigurations().maybeCreate("resolve_dep_" + currentID);
-        cfg.getDependencies().add(dependency);
-        Set<File> files = cfg.resolve();
-        project.getConfigurations().remove(cfg);
+        Configuration cfg;
+        synchronized (project.getConfigurations()) {
+            cfg = project.getConfigurations().maybeCreate("resolve_dep_" + currentID);
+            cfg.getDependencies().add(dependency);
+        }
+        Set<File> files;
+        try {
+            files = cfg.resolve();
+        } catch (RuntimeException ex) {
+            // Let whoever is waiting on it know, and let the next caller try again
+            synchronized (resolved) {
+                resolved.invalidate(name);
+            }
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            synchronized (project.getConfigurations()) {
+                project.getConfigurations().remove(cfg);
+            }
+        }
         future.complete(files);
         return files;
     }
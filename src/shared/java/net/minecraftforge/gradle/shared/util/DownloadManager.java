@@ -0,0 +1,409 @@
+package net.minecraftforge.gradle.shared.util;
+
+import org.gradle.internal.hash.HashValue;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Downloads files over HTTP, resuming interrupted downloads and retrying failed ones.<br/>
+ * Downloads are written to a {@code .part} file which is kept around between attempts (and builds),
+ * so a dropped connection only costs the bytes that weren't received yet. Resumes are conditional on the remote
+ * file not having changed, and partial files are locked so other processes sharing them wait. Each host gets a limited
+ * amount of concurrent connections, and every response is read in full so the JVM can keep the
+ * connection alive and reuse it for the next request.
+ */
+public class DownloadManager {
+
+    private static final int CONNECT_TIMEOUT = 30000;
+    private static final int READ_TIMEOUT = 60000;
+    private static final long MAX_BACKOFF = 30000;
+
+    private static DownloadManager instance;
+    // Partial files being downloaded in this JVM, by path. Shared by all managers, since file locks are held per JVM.
+    // Entries only live as long as someone is using them
+    private static final Map<String, PartLock> locks = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the download manager shared by the whole build.
+     */
+    public static synchronized DownloadManager getDefault() {
+        if (instance == null) {
+            instance = new DownloadManager(new File(System.getProperty("java.io.tmpdir"), "forgegradle-downloads"), 4, 5, 500);
+        }
+        return instance;
+    }
+
+    /**
+     * Whether a URL is downloaded over HTTP, and can therefore be resumed.
+     */
+    public static boolean isHttp(URL url) {
+        return url.getProtocol().equals("http") || url.getProtocol().equals("https");
+    }
+
+    private final File directory;
+    private final int connectionsPerHost;
+    private final int maxAttempts;
+    private final long initialBackoff;
+    private final Map<String, Semaphore> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * @param directory          Where partial downloads are kept.
+     * @param connectionsPerHost How many downloads can run against the same host at once.
+     * @param maxAttempts        How many times a download is attempted before giving up.
+     * @param initialBackoff     How long to wait before the first retry, in milliseconds. Doubles with every retry.
+     */
+    public DownloadManager(File directory, int connectionsPerHost, int maxAttempts, long initialBackoff) {
+        this.directory = directory;
+        this.connectionsPerHost = connectionsPerHost;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+    }
+
+    /**
+     * Downloads a file, verifying its length and hash if known.<br/>
+     * Anything that isn't HTTP is simply copied over, since there's nothing to resume.
+     * The returned file belongs to the caller, who is responsible for deleting it.
+     *
+     * @param length The expected length, or {@code -1} if unknown.
+     * @param sha1   The expected SHA-1, or {@code null} if unknown.
+     */
+    public File download(URL url, long length, @Nullable HashValue sha1) throws IOException {
+        // Name partial files after what they will contain, so they can be resumed by later builds
+        String key = sha1 != null ? sha1.asZeroPaddedHexString(40) : sha1Hex(url.toString());
+        if (!isHttp(url)) {
+            directory.mkdirs();
+            File target = File.createTempFile(key, ".download", directory);
+            try (InputStream in = new HashingInputStream(HttpFetcher.openStream(url), sha1, length, url.toString())) {
+                Files.copy(in, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException ex) {
+                target.delete();
+                throw ex;
+            }
+            return target;
+        }
+        // Each host gets its own partial file, so the same file can be raced between mirrors
+        String partName = key + "-" + url.getHost().replaceAll("[^A-Za-z0-9.-]", "_") + ".part";
+        File part = new File(directory, partName);
+        String path = part.getAbsolutePath();
+        PartLock partLock = locks.compute(path, ($, existing) -> {
+            if (existing == null) return new PartLock();
+            existing.users++;
+            return existing;
+        });
+        synchronized (partLock) {
+            try {
+                directory.mkdirs();
+                // Other processes sharing the directory may be downloading the same file, wait for them
+                File lockFile = new File(directory, partName + ".lock");
+                try (FileChannel lockChannel = lockFile(lockFile)) {
+                    try {
+                        return download(url, part, key, length, sha1);
+                    } finally {
+                        // Nobody else is waiting for it, and whoever comes later starts from scratch
+                        if (partLock.users == 1 && lockFile.delete()) {
+                            lockChannel.write(ByteBuffer.wrap(new byte[]{1}), 0); // Tell processes waiting on it that it's gone
+                        }
+                    }
+                }
+            } finally {
+                // Only once the file lock is released, so whoever gets a new entry can't overlap it
+                locks.computeIfPresent(path, ($, existing) -> --existing.users == 0 ? null : existing);
+            }
+        }
+    }
+
+    /**
+     * Opens and locks a lock file, retrying if the file was deleted by its previous holder while waiting for it.<br/>
+     * Holders that delete the file then write a byte into it, so a live lock file is always empty.
+     */
+    private static FileChannel lockFile(File file) throws IOException {
+        while (true) {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                channel.lock();
+                if (channel.size() == 0) return channel; // Closing the channel releases the lock
+            } catch (IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+            channel.close();
+        }
+    }
+
+    private File download(URL url, File part, String key, long length, @Nullable HashValue sha1) throws IOException {
+        IOException failure = null;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            if (attempt > 0) backoff(attempt);
+            try {
+                fetch(url, part, length, sha1);
+                File target = File.createTempFile(key, ".download", directory);
+                Files.move(part.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                getValidatorFile(part).delete();
+                return target;
+            } catch (FileNotFoundException ex) {
+                throw ex; // Retrying won't make it appear
+            } catch (InterruptedIOException ex) {
+                if (Thread.currentThread().isInterrupted()) throw ex;
+                failure = addFailure(failure, ex); // Timed out, try again
+            } catch (IOException ex) {
+                failure = addFailure(failure, ex);
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * Gets the length of a remote file without downloading it.
+     *
+     * @return The length, or {@code -1} if the server doesn't say.
+     */
+    public long getContentLength(URL url) throws IOException {
+        if (!isHttp(url)) {
+            URLConnection connection = HttpFetcher.getDefault().open(url);
+            long length = connection.getContentLengthLong();
+            connection.getInputStream().close();
+            return length;
+        }
+        Semaphore permits = acquire(url);
+        try {
+            HttpURLConnection connection = open(url);
+            connection.setRequestMethod("HEAD");
+            int code = connection.getResponseCode();
+            drain(connection);
+            if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE) {
+                throw new FileNotFoundException(url.toString());
+            }
+            return code == HttpURLConnection.HTTP_OK ? connection.getContentLengthLong() : -1;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void fetch(URL url, File part, long length, @Nullable HashValue sha1) throws IOException {
+        long offset = part.exists() ? part.length() : 0;
+        String validator = offset > 0 ? readValidator(part) : null;
+        if (length != -1 && offset > length) {
+            deletePart(part); // Can't be the right file
+            offset = 0;
+        } else if (offset > 0 && sha1 == null && validator == null) {
+            deletePart(part); // Nothing can tell whether the remote file is still the one we have the start of
+            offset = 0;
+        }
+
+        Semaphore permits = acquire(url);
+        try {
+            HttpURLConnection connection = open(url);
+            if (offset > 0) {
+                connection.setRequestProperty("Range", "bytes=" + offset + "-");
+                // Only get the rest if the remote file hasn't changed, and all of it otherwise
+                if (validator != null) connection.setRequestProperty("If-Range", validator);
+            }
+            int code = connection.getResponseCode();
+
+            boolean append;
+            if (code == HttpURLConnection.HTTP_PARTIAL && isRangeFrom(connection, offset)) {
+                append = true;
+            } else if (code == HttpURLConnection.HTTP_OK) {
+                append = false; // The server ignored the range or the file changed, start over
+            } else if (code == 416 && offset > 0 && offset == length) {
+                drain(connection); // Everything was already downloaded, just verify it
+                verify(url, part, length, sha1, digest(part, createDigest()));
+                return;
+            } else {
+                drain(connection);
+                if (code == 416 || code == HttpURLConnection.HTTP_PARTIAL) deletePart(part); // Our partial file is no good, start over next time
+                if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE) {
+                    throw new FileNotFoundException(url.toString());
+                }
+                throw new IOException("Server returned HTTP " + code + " for " + url);
+            }
+
+            if (!append) writeValidator(part, connection);
+
+            // Hash whatever we already have, then the new bytes as they arrive
+            MessageDigest digest = append ? digest(part, createDigest()) : createDigest();
+            try (InputStream in = connection.getInputStream();
+                 OutputStream out = new FileOutputStream(part, append)) {
+                byte[] buffer = new byte[65536];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    digest.update(buffer, 0, read);
+                    if (Thread.currentThread().isInterrupted()) {
+                        // Nobody wants this anymore, such as a mirror that lost a race. What we have so far can be resumed
+                        connection.disconnect();
+                        throw new InterruptedIOException("Interrupted while downloading " + url);
+                    }
+                }
+            }
+            verify(url, part, length, sha1, digest);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void verify(URL url, File part, long length, @Nullable HashValue sha1, MessageDigest digest) throws IOException {
+        if (length != -1 && part.length() != length) {
+            // Too short means we can resume, anything else is garbage
+            if (part.length() > length) deletePart(part);
+            throw new IOException("Length mismatch for " + url + ": expected " + length + " bytes but got " + part.length());
+        }
+        HashValue actual = new HashValue(digest.digest());
+        if (sha1 != null && !sha1.equals(actual)) {
+            deletePart(part);
+            throw new IOException("Checksum mismatch for " + url + ": expected SHA-1 " + sha1.asZeroPaddedHexString(40)
+                    + " but got " + actual.asZeroPaddedHexString(40));
+        }
+    }
+
+    private static File getValidatorFile(File part) {
+        return new File(part.getPath() + ".validator");
+    }
+
+    /**
+     * Gets what identifies the remote version of a partial file, to resume it with {@code If-Range}.
+     */
+    @Nullable
+    private static String readValidator(File part) {
+        File file = getValidatorFile(part);
+        if (!file.exists()) return null;
+        try {
+            String validator = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+            return validator.isEmpty() ? null : validator;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Remembers what identifies the remote version of a file that's being downloaded from the start.<br/>
+     * Weak ETags can't be used with {@code If-Range}, so those fall back to the last modified date.
+     */
+    private static void writeValidator(File part, HttpURLConnection connection) throws IOException {
+        String validator = connection.getHeaderField("ETag");
+        if (validator == null || validator.startsWith("W/")) validator = connection.getHeaderField("Last-Modified");
+        File file = getValidatorFile(part);
+        if (validator == null) {
+            file.delete();
+        } else {
+            Files.write(file.toPath(), validator.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void deletePart(File part) {
+        part.delete();
+        getValidatorFile(part).delete();
+    }
+
+    private HttpURLConnection open(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) HttpFetcher.getDefault().open(url);
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        connection.setInstanceFollowRedirects(true);
+        return connection;
+    }
+
+    private Semaphore acquire(URL url) throws InterruptedIOException {
+        Semaphore permits = hosts.computeIfAbsent(url.getHost(), $ -> new Semaphore(connectionsPerHost, true));
+        try {
+            permits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to download " + url);
+        }
+        return permits;
+    }
+
+    private void backoff(int attempt) throws InterruptedIOException {
+        try {
+            Thread.sleep(Math.min(MAX_BACKOFF, initialBackoff << (attempt - 1)));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry a download");
+        }
+    }
+
+    private static boolean isRangeFrom(HttpURLConnection connection, long offset) {
+        String range = connection.getHeaderField("Content-Range");
+        return range != null && range.startsWith("bytes " + offset + "-");
+    }
+
+    /**
+     * Reads and closes whatever the server sent, which lets the connection be reused.
+     */
+    private static void drain(HttpURLConnection connection) {
+        try {
+            InputStream in = connection.getResponseCode() >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            if (in == null) return;
+            byte[] buffer = new byte[4096];
+            while (in.read(buffer) != -1) {
+                // Discard
+            }
+            in.close();
+        } catch (IOException ex) {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Serializes the downloads of a partial file within this JVM.
+     */
+    private static final class PartLock {
+
+        // How many threads are downloading or waiting to download the file. Only changed inside the map
+        private volatile int users = 1;
+
+    }
+
+    private static IOException addFailure(@Nullable IOException failure, IOException ex) {
+        if (failure == null) return ex;
+        failure.addSuppressed(ex);
+        return failure;
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static MessageDigest digest(File file, MessageDigest digest) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[65536];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest;
+    }
+
+    private static String sha1Hex(String str) {
+        return new HashValue(createDigest().digest(str.getBytes(StandardCharsets.UTF_8))).asZeroPaddedHexString(40);
+    }
+
+}
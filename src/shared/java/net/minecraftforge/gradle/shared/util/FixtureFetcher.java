@@ -0,0 +1,214 @@
+package net.minecraftforge.gradle.shared.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * {@link HttpFetcher} that serves HTTP resources from a fixture directory, laid out as {@code <host>/<path>}.<br/>
+ * In {@link Mode#RECORD record} mode, resources missing from the directory are downloaded into it first.
+ * In {@link Mode#REPLAY replay} mode the network is never touched, and missing resources are reported as not found.
+ * Either way, every request is answered from disk, with support for the range and conditional requests the rest of
+ * the plugin makes, which makes resolution reproducible on machines without network access.
+ */
+public class FixtureFetcher implements HttpFetcher {
+
+    public enum Mode {
+        RECORD, REPLAY
+    }
+
+    private final File directory;
+    private final Mode mode;
+    private final HttpFetcher delegate;
+
+    /**
+     * @param directory Where the recorded resources are kept.
+     * @param mode      Whether to record missing resources or only replay existing ones.
+     * @param delegate  What to record resources from.
+     */
+    public FixtureFetcher(File directory, Mode mode, HttpFetcher delegate) {
+        this.directory = directory;
+        this.mode = mode;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public URLConnection open(URL url) throws IOException {
+        if (!DownloadManager.isHttp(url)) return delegate.open(url);
+        File file = getFile(url);
+        if (!file.isFile() && mode == Mode.RECORD) {
+            record(url, file);
+        }
+        return new FixtureConnection(url, file);
+    }
+
+    /**
+     * Gets the file a URL is recorded in.
+     */
+    public File getFile(URL url) {
+        String path = url.getPath();
+        if (path.isEmpty() || path.endsWith("/")) path += "index";
+        if (url.getQuery() != null) path += "_" + url.getQuery().replaceAll("[^A-Za-z0-9.=-]", "_");
+        return new File(directory, url.getHost() + path);
+    }
+
+    private void record(URL url, File file) throws IOException {
+        URLConnection connection = delegate.open(url);
+        if (connection instanceof HttpURLConnection) {
+            int code = ((HttpURLConnection) connection).getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE) return; // Replayed as missing
+            if (code != HttpURLConnection.HTTP_OK) throw new IOException("Server returned HTTP " + code + " for " + url);
+        }
+        file.getParentFile().mkdirs();
+        File tmp = File.createTempFile("fixture", ".tmp", file.getParentFile());
+        try (InputStream in = connection.getInputStream()) {
+            Files.copy(in, tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * A connection that answers from a recorded file, the way a static HTTP server would.
+     */
+    private static class FixtureConnection extends HttpURLConnection {
+
+        private final File file;
+        private final Map<String, List<String>> headers = new LinkedHashMap<>();
+        private long offset = 0;
+
+        private FixtureConnection(URL url, File file) {
+            super(url);
+            this.file = file;
+        }
+
+        @Override
+        public void connect() {
+            if (connected) return;
+            // Request properties can't be read once connected
+            String range = getRequestProperty("Range");
+            String ifNoneMatch = getRequestProperty("If-None-Match");
+            String ifRange = getRequestProperty("If-Range");
+            connected = true;
+            if (!file.isFile()) {
+                responseCode = HTTP_NOT_FOUND;
+                return;
+            }
+
+            long length = file.length();
+            String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(file.lastModified()) + "\"";
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            String lastModified = format.format(new Date(file.lastModified()));
+            setHeader("ETag", etag);
+            setHeader("Last-Modified", lastModified);
+            // A range that's conditional on an old version of the file gets the whole file instead
+            if (ifRange != null && !ifRange.equals(etag) && !ifRange.equals(lastModified)) range = null;
+            setHeader("Accept-Ranges", "bytes");
+
+            if (etag.equals(ifNoneMatch)) {
+                responseCode = HTTP_NOT_MODIFIED;
+                setHeader("Content-Length", "0");
+            } else if (range != null && range.startsWith("bytes=") && range.endsWith("-")) {
+                offset = Long.parseLong(range.substring(6, range.length() - 1));
+                if (offset >= length) {
+                    responseCode = 416;
+                    setHeader("Content-Range", "bytes */" + length);
+                    setHeader("Content-Length", "0");
+                } else {
+                    responseCode = HTTP_PARTIAL;
+                    setHeader("Content-Range", "bytes " + offset + "-" + (length - 1) + "/" + length);
+                    setHeader("Content-Length", Long.toString(length - offset));
+                }
+            } else {
+                responseCode = HTTP_OK;
+                setHeader("Content-Length", Long.toString(length));
+            }
+        }
+
+        private void setHeader(String name, String value) {
+            headers.put(name, Collections.singletonList(value));
+        }
+
+        @Override
+        public int getResponseCode() {
+            connect();
+            return responseCode;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            connect();
+            if (responseCode == HTTP_NOT_FOUND) throw new FileNotFoundException(url.toString());
+            if (responseCode >= 400) throw new IOException("Server returned HTTP " + responseCode + " for " + url);
+            if (responseCode == HTTP_NOT_MODIFIED || method.equals("HEAD")) return new ByteArrayInputStream(new byte[0]);
+            InputStream in = new FileInputStream(file);
+            long skipped = 0;
+            while (skipped < offset) {
+                skipped += in.skip(offset - skipped);
+            }
+            return in;
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return null;
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            connect();
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                if (header.getKey().equalsIgnoreCase(name)) return header.getValue().get(0);
+            }
+            return null;
+        }
+
+        @Override
+        public String getHeaderFieldKey(int n) {
+            connect();
+            return n < headers.size() ? new ArrayList<>(headers.keySet()).get(n) : null;
+        }
+
+        @Override
+        public String getHeaderField(int n) {
+            connect();
+            return n < headers.size() ? new ArrayList<>(headers.values()).get(n).get(0) : null;
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaderFields() {
+            connect();
+            return Collections.unmodifiableMap(headers);
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public boolean usingProxy() {
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,132 @@
+package net.minecraftforge.gradle.shared.util;
+
+import org.gradle.internal.hash.HashValue;
+
+import javax.annotation.Nullable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * An input stream that computes the SHA-1 of the bytes that are read through it.<br/>
+ * If an expected hash or length is given, they are checked as soon as the end of the stream is reached,
+ * and an {@link IOException} is thrown on mismatch so corrupt contents are never consumed as a whole.
+ */
+public class HashingInputStream extends FilterInputStream {
+
+    private final MessageDigest digest;
+    @Nullable
+    private final HashValue expectedHash;
+    private final long expectedLength;
+    @Nullable
+    private final String name;
+    private long count = 0;
+    private HashValue hash;
+
+    /**
+     * @param expectedHash   The SHA-1 the contents must have, or {@code null} to not verify it.
+     * @param expectedLength The length the contents must have, or {@code -1} to not verify it.
+     * @param name           What to refer to the contents as when verification fails.
+     */
+    public HashingInputStream(InputStream in, @Nullable HashValue expectedHash, long expectedLength, @Nullable String name) {
+        super(in);
+        try {
+            this.digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+        this.expectedHash = expectedHash;
+        this.expectedLength = expectedLength;
+        this.name = name;
+    }
+
+    public HashingInputStream(InputStream in) {
+        this(in, null, -1, null);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            finish();
+        } else {
+            digest.update((byte) b);
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read == -1) {
+            finish();
+        } else {
+            digest.update(b, off, read);
+            count += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Skipped bytes still need to be hashed
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+            if (read == -1) break;
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    private void finish() throws IOException {
+        if (hash != null) return;
+        hash = new HashValue(digest.digest());
+        if (expectedLength != -1 && count != expectedLength) {
+            throw new IOException("Length mismatch for " + name + ": expected " + expectedLength + " bytes but got " + count);
+        }
+        if (expectedHash != null && !expectedHash.equals(hash)) {
+            throw new IOException("Checksum mismatch for " + name + ": expected SHA-1 " + expectedHash.asZeroPaddedHexString(40)
+                    + " but got " + hash.asZeroPaddedHexString(40));
+        }
+    }
+
+    /**
+     * Gets the amount of bytes read so far.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the SHA-1 of the contents, reading whatever is left of the stream first.
+     */
+    public HashValue getHash() throws IOException {
+        if (hash == null) {
+            byte[] buffer = new byte[8192];
+            while (read(buffer, 0, buffer.length) != -1) {
+                // Drain the stream
+            }
+        }
+        return hash;
+    }
+
+}
@@ -0,0 +1,67 @@
+package net.minecraftforge.gradle.shared.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Opens connections to remote resources.<br/>
+ * Everything that talks to the network goes through the default fetcher, so it can be swapped for one that
+ * records what's downloaded or replays it from disk, such as {@link FixtureFetcher}.
+ */
+@FunctionalInterface
+public interface HttpFetcher {
+
+    /**
+     * Fetcher that connects straight to the URL.
+     */
+    HttpFetcher DIRECT = URL::openConnection;
+
+    /**
+     * Gets the fetcher used by the whole build.
+     */
+    static HttpFetcher getDefault() {
+        return Holder.fetcher.get();
+    }
+
+    /**
+     * Replaces the fetcher used by the whole build.<br/>
+     * The fetcher is shared by the whole JVM, so it <b>must</b> be put back with {@link #restoreDefault(HttpFetcher)}
+     * once the build is done, or the daemon's next build will use it too.
+     */
+    static void setDefault(HttpFetcher fetcher) {
+        Holder.fetcher.set(fetcher);
+    }
+
+    /**
+     * Goes back to fetching directly, unless the given fetcher has been replaced in the meantime.
+     */
+    static void restoreDefault(HttpFetcher fetcher) {
+        Holder.fetcher.compareAndSet(fetcher, DIRECT);
+    }
+
+    /**
+     * Opens a stream to a URL through the default fetcher.
+     */
+    static InputStream openStream(URL url) throws IOException {
+        return getDefault().open(url).getInputStream();
+    }
+
+    /**
+     * Opens a connection to a URL, which has not connected yet so that it can still be configured.<br/>
+     * HTTP URLs <b>must</b> give an {@link java.net.HttpURLConnection}.
+     */
+    URLConnection open(URL url) throws IOException;
+
+    final class Holder {
+
+        private static final AtomicReference<HttpFetcher> fetcher = new AtomicReference<>(DIRECT);
+
+        private Holder() {
+        }
+
+    }
+
+}
@@ -0,0 +1,212 @@
+package net.minecraftforge.gradle.shared.util;
+
+import org.gradle.internal.impldep.org.apache.commons.io.IOUtils;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Merges a client and a server jar into a single jar.<br/>
+ * Classes and members that only exist on one side are annotated with {@code @SideOnly}, and classes that exist on both
+ * sides are merged in parallel. The output is written in name order, so the same inputs always give the same jar.
+ */
+public final class JarMerger {
+
+    private static final String SIDE_ONLY = "Lnet/minecraftforge/fml/relauncher/SideOnly;";
+    private static final String SIDE = "Lnet/minecraftforge/fml/relauncher/Side;";
+
+    private JarMerger() {
+    }
+
+    /**
+     * Merges the client and server jars into the output jar, doing the class merging on the given executor.
+     */
+    public static void merge(File client, File server, File output, Executor executor) throws IOException {
+        try (ZipFile clientZip = new ZipFile(client);
+             ZipFile serverZip = new ZipFile(server)) {
+            Map<String, ZipEntry> clientEntries = index(clientZip);
+            Map<String, ZipEntry> serverEntries = index(serverZip);
+            Set<String> names = new TreeSet<>(clientEntries.keySet());
+            names.addAll(serverEntries.keySet());
+
+            // Work on a limited window of entries ahead of the one being written, so only that many are in memory at once
+            List<String> order = new ArrayList<>(names);
+            List<CompletableFuture<byte[]>> results = new ArrayList<>(Collections.nCopies(order.size(), null));
+            int window = 2 * (executor instanceof ForkJoinPool ? ((ForkJoinPool) executor).getParallelism() : Runtime.getRuntime().availableProcessors());
+            for (int i = 0; i < Math.min(window, order.size()); i++) {
+                results.set(i, start(order.get(i), clientZip, clientEntries, serverZip, serverEntries, executor));
+            }
+
+            try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(output))) {
+                for (int i = 0; i < order.size(); i++) {
+                    String name = order.get(i);
+                    ZipEntry source = clientEntries.containsKey(name) ? clientEntries.get(name) : serverEntries.get(name);
+                    ZipEntry entry = new ZipEntry(name);
+                    entry.setTime(source.getTime());
+                    out.putNextEntry(entry);
+                    out.write(Util.join(results.get(i)));
+                    out.closeEntry();
+
+                    // Let go of what was written, and slide the window along
+                    results.set(i, null);
+                    if (i + window < order.size()) {
+                        results.set(i + window, start(order.get(i + window), clientZip, clientEntries, serverZip, serverEntries, executor));
+                    }
+                }
+            }
+        }
+    }
+
+    private static CompletableFuture<byte[]> start(String name, ZipFile clientZip, Map<String, ZipEntry> clientEntries,
+                                                   ZipFile serverZip, Map<String, ZipEntry> serverEntries, Executor executor) {
+        ZipEntry clientEntry = clientEntries.get(name);
+        ZipEntry serverEntry = serverEntries.get(name);
+        return Util.supplyAsync(() -> process(name, clientZip, clientEntry, serverZip, serverEntry), executor);
+    }
+
+    /**
+     * Indexes the entries of a jar by name, leaving out directories and signatures, which won't match the merged classes.
+     */
+    private static Map<String, ZipEntry> index(ZipFile zip) {
+        Map<String, ZipEntry> entries = new HashMap<>();
+        Enumeration<? extends ZipEntry> enumeration = zip.entries();
+        while (enumeration.hasMoreElements()) {
+            ZipEntry entry = enumeration.nextElement();
+            String name = entry.getName();
+            if (entry.isDirectory()) continue;
+            if (name.startsWith("META-INF/") && (name.endsWith(".SF") || name.endsWith(".RSA") || name.endsWith(".DSA") || name.endsWith(".EC"))) {
+                continue;
+            }
+            entries.put(name, entry);
+        }
+        return entries;
+    }
+
+    private static byte[] process(String name, ZipFile clientZip, @Nullable ZipEntry clientEntry,
+                                  ZipFile serverZip, @Nullable ZipEntry serverEntry) throws IOException {
+        byte[] clientBytes = clientEntry == null ? null : read(clientZip, clientEntry);
+        if (!name.endsWith(".class")) {
+            return clientBytes != null ? clientBytes : read(serverZip, serverEntry); // Resources are taken from the client if possible
+        }
+
+        byte[] serverBytes = serverEntry == null ? null : read(serverZip, serverEntry);
+        if (serverBytes == null) return annotateClass(clientBytes, "CLIENT");
+        if (clientBytes == null) return annotateClass(serverBytes, "SERVER");
+        if (Arrays.equals(clientBytes, serverBytes)) return clientBytes;
+        return mergeClass(clientBytes, serverBytes);
+    }
+
+    private static byte[] read(ZipFile zip, ZipEntry entry) throws IOException {
+        try (InputStream in = zip.getInputStream(entry)) {
+            byte[] bytes = new byte[(int) Math.max(entry.getSize(), 0)];
+            int pos = 0, read;
+            while (pos < bytes.length && (read = in.read(bytes, pos, bytes.length - pos)) != -1) {
+                pos += read;
+            }
+            if (entry.getSize() >= 0 && pos == bytes.length && in.read() == -1) return bytes;
+        }
+        // The size wasn't known or was wrong, so just read the whole thing
+        try (InputStream in = zip.getInputStream(entry)) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+
+    private static byte[] annotateClass(byte[] bytes, String side) {
+        ClassNode node = readClass(bytes);
+        node.visibleAnnotations = addSideOnly(node.visibleAnnotations, side);
+        return writeClass(node);
+    }
+
+    private static byte[] mergeClass(byte[] clientBytes, byte[] serverBytes) {
+        ClassNode client = readClass(clientBytes);
+        ClassNode server = readClass(serverBytes);
+
+        // Fields, with the server-only ones going after the client ones
+        Set<String> serverFields = new HashSet<>();
+        for (FieldNode field : server.fields) serverFields.add(field.name);
+        Set<String> clientFields = new HashSet<>();
+        for (FieldNode field : client.fields) {
+            clientFields.add(field.name);
+            if (!serverFields.contains(field.name)) field.visibleAnnotations = addSideOnly(field.visibleAnnotations, "CLIENT");
+        }
+        for (FieldNode field : server.fields) {
+            if (clientFields.contains(field.name)) continue;
+            field.visibleAnnotations = addSideOnly(field.visibleAnnotations, "SERVER");
+            client.fields.add(field);
+        }
+
+        // Methods, in the same way
+        Set<String> serverMethods = new HashSet<>();
+        for (MethodNode method : server.methods) serverMethods.add(method.name + method.desc);
+        Set<String> clientMethods = new HashSet<>();
+        for (MethodNode method : client.methods) {
+            clientMethods.add(method.name + method.desc);
+            if (!serverMethods.contains(method.name + method.desc)) method.visibleAnnotations = addSideOnly(method.visibleAnnotations, "CLIENT");
+        }
+        for (MethodNode method : server.methods) {
+            if (clientMethods.contains(method.name + method.desc)) continue;
+            method.visibleAnnotations = addSideOnly(method.visibleAnnotations, "SERVER");
+            client.methods.add(method);
+        }
+
+        // And anything else that only one side knows about
+        for (String itf : server.interfaces) {
+            if (!client.interfaces.contains(itf)) client.interfaces.add(itf);
+        }
+        Set<String> innerClasses = new HashSet<>();
+        for (InnerClassNode inner : client.innerClasses) innerClasses.add(inner.name);
+        for (InnerClassNode inner : server.innerClasses) {
+            if (innerClasses.add(inner.name)) client.innerClasses.add(inner);
+        }
+
+        return writeClass(client);
+    }
+
+    private static List<AnnotationNode> addSideOnly(@Nullable List<AnnotationNode> annotations, String side) {
+        if (annotations == null) annotations = new ArrayList<>();
+        AnnotationNode annotation = new AnnotationNode(SIDE_ONLY);
+        annotation.values = new ArrayList<>(Arrays.asList("value", new String[]{SIDE, side}));
+        annotations.add(annotation);
+        return annotations;
+    }
+
+    private static ClassNode readClass(byte[] bytes) {
+        ClassNode node = new ClassNode();
+        new ClassReader(bytes).accept(node, 0);
+        return node;
+    }
+
+    private static byte[] writeClass(ClassNode node) {
+        // Code is never touched, so the existing frames and maxs are still valid
+        ClassWriter writer = new ClassWriter(0);
+        node.accept(writer);
+        return writer.toByteArray();
+    }
+
+}
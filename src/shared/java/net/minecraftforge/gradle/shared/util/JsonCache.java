@@ -0,0 +1,134 @@
+package net.minecraftforge.gradle.shared.util;
+
+import org.gradle.internal.hash.HashUtil;
+import org.gradle.internal.impldep.com.google.gson.Gson;
+import org.gradle.internal.impldep.com.google.gson.JsonObject;
+import org.gradle.internal.impldep.com.google.gson.JsonParseException;
+import org.gradle.internal.impldep.org.apache.commons.io.IOUtils;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * An on-disk cache of JSON documents downloaded over HTTP.<br/>
+ * Cached copies are revalidated with {@code If-None-Match} and {@code If-Modified-Since}, so an unchanged
+ * document costs a single empty response. The last good copy is used when offline or when the server can't be reached.
+ */
+public class JsonCache {
+
+    private static final int CONNECT_TIMEOUT = 30000;
+    private static final int READ_TIMEOUT = 60000;
+
+    private final File directory;
+    private final boolean offline;
+
+    /**
+     * @param directory Where the documents are kept.
+     * @param offline   Whether to only ever use the cached copies.
+     */
+    public JsonCache(File directory, boolean offline) {
+        this.directory = directory;
+        this.offline = offline;
+    }
+
+    /**
+     * Gets a JSON document.
+     *
+     * @param revalidate Whether to check a cached copy is still up to date. Documents whose URL changes
+     *                   along with their contents never need this.
+     * @return The document, or {@code null} if it doesn't exist.
+     */
+    @Nullable
+    public JsonObject get(String url, boolean revalidate) throws IOException {
+        String key = HashUtil.createHash(url, "SHA1").asZeroPaddedHexString(40);
+        File file = new File(directory, key + ".json");
+        File metaFile = new File(directory, key + ".properties");
+
+        JsonObject cached = file.exists() ? read(file) : null;
+        if (cached != null && (offline || !revalidate)) return cached;
+        if (offline) throw new IOException("No cached copy of " + url + " is available in offline mode");
+
+        Properties meta = new Properties();
+        if (cached != null && metaFile.exists()) {
+            try (Reader reader = Files.newBufferedReader(metaFile.toPath(), StandardCharsets.UTF_8)) {
+                meta.load(reader);
+            }
+        }
+
+        try {
+            URLConnection connection = HttpFetcher.getDefault().open(new URL(url));
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+            if (cached != null) {
+                if (meta.getProperty("etag") != null) connection.setRequestProperty("If-None-Match", meta.getProperty("etag"));
+                if (meta.getProperty("lastModified") != null) connection.setRequestProperty("If-Modified-Since", meta.getProperty("lastModified"));
+            }
+            if (connection instanceof HttpURLConnection) {
+                int code = ((HttpURLConnection) connection).getResponseCode();
+                if (code == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                    connection.getInputStream().close();
+                    return cached;
+                }
+                if (code == HttpURLConnection.HTTP_NOT_FOUND) return null;
+            }
+
+            byte[] bytes;
+            try (InputStream in = connection.getInputStream()) {
+                bytes = IOUtils.toByteArray(in);
+            }
+            JsonObject json = parse(bytes);
+
+            // Keep the new copy, along with what we need to revalidate it later
+            directory.mkdirs();
+            write(file, bytes);
+            meta.clear();
+            if (connection.getHeaderField("ETag") != null) meta.setProperty("etag", connection.getHeaderField("ETag"));
+            if (connection.getHeaderField("Last-Modified") != null) meta.setProperty("lastModified", connection.getHeaderField("Last-Modified"));
+            File tmp = File.createTempFile(metaFile.getName(), ".tmp", directory);
+            try (Writer writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+                meta.store(writer, url);
+            }
+            Files.move(tmp.toPath(), metaFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return json;
+        } catch (FileNotFoundException ex) {
+            return null;
+        } catch (IOException | JsonParseException ex) {
+            if (cached != null) return cached; // Better out of date than nothing
+            throw ex instanceof IOException ? (IOException) ex : new IOException("Invalid JSON from " + url, ex);
+        }
+    }
+
+    @Nullable
+    private static JsonObject read(File file) throws IOException {
+        try {
+            return parse(Files.readAllBytes(file.toPath()));
+        } catch (JsonParseException ex) {
+            return null; // Corrupt, treat it as missing
+        }
+    }
+
+    private static JsonObject parse(byte[] bytes) {
+        JsonObject json = new Gson().fromJson(new String(bytes, StandardCharsets.UTF_8), JsonObject.class);
+        if (json == null) throw new JsonParseException("Empty document");
+        return json;
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        Files.write(tmp.toPath(), bytes);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+}
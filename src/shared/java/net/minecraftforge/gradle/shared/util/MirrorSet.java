@@ -0,0 +1,307 @@
+package net.minecraftforge.gradle.shared.util;
+
+import org.gradle.internal.hash.HashValue;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A set of interchangeable base URLs that serve the same files.<br/>
+ * The mirrors are probed once, and every fetch starts at the fastest healthy one. If it fails, the next one is tried,
+ * and if it doesn't answer within the hedge delay, the next one is raced against it and whichever finishes first wins.
+ * The attempts that lose are interrupted. Mirrors that fail are put at the back of the line for a while.
+ */
+public class MirrorSet {
+
+    private static final int PROBE_TIMEOUT = 5000;
+    private static final long UNHEALTHY_PERIOD = TimeUnit.MINUTES.toNanos(5);
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "ForgeGradle mirror fetcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Mirror> mirrors = new CopyOnWriteArrayList<>();
+    private final long hedgeDelay;
+    private volatile boolean probed = false;
+
+    /**
+     * @param hedgeDelay How long to wait on a mirror before racing the next one against it, in milliseconds.
+     * @param urls       The base URLs of the mirrors, in order of preference.
+     */
+    public MirrorSet(long hedgeDelay, String... urls) {
+        this.hedgeDelay = hedgeDelay;
+        for (String url : urls) {
+            add(url);
+        }
+    }
+
+    /**
+     * Adds a mirror, which will be probed along with the others.
+     */
+    public void add(String url) {
+        mirrors.add(new Mirror(url.endsWith("/") ? url : url + "/", mirrors.size()));
+        probed = false;
+    }
+
+    /**
+     * Gets the base URL of the preferred mirror, which is what the repository is named after.
+     */
+    public String getPrimary() {
+        return mirrors.get(0).base;
+    }
+
+    /**
+     * Gets the base URLs of all the mirrors, from fastest to slowest.
+     */
+    public List<String> getMirrors() {
+        List<String> urls = new ArrayList<>();
+        for (Mirror mirror : getOrder()) {
+            urls.add(mirror.base);
+        }
+        return urls;
+    }
+
+    /**
+     * Downloads a file from the mirrors through the default {@link DownloadManager}, verifying its length and hash if known.
+     * URLs that aren't under any of the mirrors are downloaded from where they point to.
+     *
+     * @see DownloadManager#download(URL, long, HashValue)
+     */
+    public File download(URL url, long length, @Nullable HashValue sha1) throws IOException {
+        return fetch(url, candidate -> DownloadManager.getDefault().download(candidate, length, sha1), File::delete);
+    }
+
+    /**
+     * Fetches something from the mirrors.<br/>
+     * The fetcher is given the URL with its mirror replaced, and may be called for several mirrors at the same time.
+     * Fetches that lose a race are interrupted, so the fetcher should stop when its thread is. Whatever they
+     * still produce is handed to the discarder.
+     * URLs that aren't under any of the mirrors are fetched as they are.
+     */
+    public <T> T fetch(URL url, IOFunction<URL, T> fetcher, Consumer<T> discarder) throws IOException {
+        String path = getPath(url.toString());
+        if (path == null) return fetcher.apply(url);
+        if (!probed) probe();
+
+        List<Mirror> order = getOrder();
+        CompletionService<T> completion = new ExecutorCompletionService<>(EXECUTOR);
+        List<Attempt<T>> attempts = new ArrayList<>();
+        IOException failure = null;
+        int next = 0, running = 0;
+        try {
+            attempts.add(start(completion, order.get(next++), path, fetcher, discarder));
+            running++;
+            while (running > 0) {
+                // Wait for an attempt to finish, but only for so long while there are other mirrors left to race
+                Future<T> done = next < order.size() ? completion.poll(hedgeDelay, TimeUnit.MILLISECONDS) : completion.take();
+                if (done == null) {
+                    attempts.add(start(completion, order.get(next++), path, fetcher, discarder)); // Stalled, race the next mirror
+                    running++;
+                    continue;
+                }
+                running--;
+                attempts.removeIf(attempt -> attempt.future == done);
+                try {
+                    T result = done.get();
+                    cancelAll(attempts, discarder);
+                    return result;
+                } catch (ExecutionException ex) {
+                    failure = addFailure(failure, ex.getCause());
+                    if (next < order.size()) {
+                        attempts.add(start(completion, order.get(next++), path, fetcher, discarder)); // Fail over to the next mirror
+                        running++;
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            cancelAll(attempts, discarder);
+            throw new InterruptedIOException("Interrupted while fetching " + url);
+        }
+        throw failure;
+    }
+
+    /**
+     * Measures how long each mirror takes to answer, so the fastest one can be tried first.
+     */
+    public synchronized void probe() {
+        if (probed) return;
+        List<Future<?>> probes = new ArrayList<>();
+        for (Mirror mirror : mirrors) {
+            probes.add(EXECUTOR.submit(mirror::probe));
+        }
+        for (Future<?> probe : probes) {
+            try {
+                probe.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException ex) {
+                // Can't happen, failed probes just mark the mirror as unhealthy
+            }
+        }
+        probed = true;
+    }
+
+    private <T> Attempt<T> start(CompletionService<T> completion, Mirror mirror, String path, IOFunction<URL, T> fetcher,
+                                 Consumer<T> discarder) {
+        Attempt<T> attempt = new Attempt<>();
+        attempt.future = completion.submit(() -> {
+            if (!attempt.begin()) throw new InterruptedIOException("Cancelled");
+            T result;
+            try {
+                result = fetcher.apply(new URL(mirror.base + path));
+            } catch (FileNotFoundException ex) {
+                attempt.finish();
+                throw ex; // The mirror answered, it just doesn't have it
+            } catch (IOException | RuntimeException ex) {
+                if (attempt.finish()) mirror.markUnhealthy(); // Being cancelled isn't the mirror's fault
+                throw ex;
+            }
+            if (!attempt.finish()) {
+                // Lost the race right as it finished, nobody will pick this up
+                discarder.accept(result);
+                throw new InterruptedIOException("Cancelled");
+            }
+            return result;
+        });
+        return attempt;
+    }
+
+    /**
+     * Interrupts the attempts that are still running, and discards the results of those that finished in the meantime.
+     */
+    private static <T> void cancelAll(List<Attempt<T>> attempts, Consumer<T> discarder) {
+        for (Attempt<T> attempt : attempts) {
+            attempt.cancel();
+            EXECUTOR.execute(() -> {
+                try {
+                    discarder.accept(attempt.future.get());
+                } catch (InterruptedException | ExecutionException ex) {
+                    // Nothing to clean up
+                }
+            });
+        }
+    }
+
+    @Nullable
+    private String getPath(String url) {
+        for (Mirror mirror : mirrors) {
+            if (url.startsWith(mirror.base)) return url.substring(mirror.base.length());
+        }
+        return null;
+    }
+
+    private List<Mirror> getOrder() {
+        List<Mirror> order = new ArrayList<>(mirrors);
+        long now = System.nanoTime();
+        order.sort(Comparator.comparing((Mirror mirror) -> mirror.isUnhealthy(now))
+                .thenComparingLong(mirror -> mirror.latency)
+                .thenComparingInt(mirror -> mirror.index));
+        return order;
+    }
+
+    private static IOException addFailure(@Nullable IOException failure, Throwable ex) {
+        IOException exception = ex instanceof IOException ? (IOException) ex : new IOException(ex);
+        if (failure == null) return exception;
+        failure.addSuppressed(exception);
+        return failure;
+    }
+
+    /**
+     * A fetch from one of the mirrors, which can be interrupted while it runs.
+     */
+    private static class Attempt<T> {
+
+        private Future<T> future;
+        @Nullable
+        private Thread thread;
+        private boolean cancelled = false;
+
+        private synchronized boolean begin() {
+            if (cancelled) return false;
+            thread = Thread.currentThread();
+            return true;
+        }
+
+        /**
+         * @return Whether the attempt is still wanted.
+         */
+        private synchronized boolean finish() {
+            thread = null;
+            Thread.interrupted(); // Don't leave an interrupt behind for whatever the pool thread runs next
+            return !cancelled;
+        }
+
+        private synchronized void cancel() {
+            cancelled = true;
+            if (thread != null) thread.interrupt();
+        }
+
+    }
+
+    private static class Mirror {
+
+        private final String base;
+        private final int index;
+        private volatile long latency = Long.MAX_VALUE;
+        private volatile long unhealthySince = 0;
+        private volatile boolean unhealthy = false;
+
+        private Mirror(String base, int index) {
+            this.base = base;
+            this.index = index;
+        }
+
+        private void probe() {
+            long start = System.nanoTime();
+            try {
+                URLConnection connection = HttpFetcher.getDefault().open(new URL(base));
+                connection.setConnectTimeout(PROBE_TIMEOUT);
+                connection.setReadTimeout(PROBE_TIMEOUT);
+                if (connection instanceof HttpURLConnection) {
+                    ((HttpURLConnection) connection).setRequestMethod("HEAD");
+                    ((HttpURLConnection) connection).getResponseCode(); // Any answer will do, we only care about how long it took
+                    ((HttpURLConnection) connection).disconnect();
+                } else {
+                    connection.connect();
+                }
+                latency = System.nanoTime() - start;
+                unhealthy = false;
+            } catch (IOException ex) {
+                markUnhealthy();
+            }
+        }
+
+        private void markUnhealthy() {
+            unhealthySince = System.nanoTime();
+            unhealthy = true;
+        }
+
+        private boolean isUnhealthy(long now) {
+            return unhealthy && now - unhealthySince < UNHEALTHY_PERIOD;
+        }
+
+    }
+
+}
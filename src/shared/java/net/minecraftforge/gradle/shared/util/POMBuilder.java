@@ -1,19 +1,25 @@
 package net.minecraftforge.gradle.shared.util;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import com.google.common.collect.ImmutableSet;
+import org.gradle.api.artifacts.ArtifactIdentifier;
+import org.gradle.api.internal.artifacts.DefaultArtifactIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
 
 import javax.annotation.Nullable;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
@@ -24,6 +30,17 @@ public class POMBuilder {
     private static final Pattern PATTERN_ARTIFACT = Pattern.compile(
             "^(?<group>[^:]+):(?<name>[^:]+)(?::(?<version>[^:]+))(?::(?<classifier>[^:@]+))?(?:@(?<extension>[^:]+))?$");
 
+    private static final Set<String> DEPENDENCY_FIELDS = ImmutableSet.of("groupId", "artifactId", "version", "classifier", "extension", "type");
+    // Looking factories up is expensive, and once configured they are safe to share
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        // POMs never need external entities, and shouldn't be able to pull them in
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
     private final String group, name, version;
     private final Dependencies dependencies = new Dependencies();
     @Nullable
@@ -57,64 +74,108 @@ public class POMBuilder {
         }
     }
 
-    public String build() throws ParserConfigurationException, TransformerException {
-        DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-        Document doc = docBuilder.newDocument();
-
-        Element project = doc.createElement("project");
-        project.setAttribute("xsi:schemaLocation", "http://maven.apache.org/POM/4.0.0 http://maven.apache.org/xsd/maven-4.0.0.xsd");
-        project.setAttribute("xmlns", "http://maven.apache.org/POM/4.0.0");
-        project.setAttribute("xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance");
-        doc.appendChild(project);
-
-        set(doc, project, "modelVersion", "4.0.0");
-        set(doc, project, "groupId", group);
-        set(doc, project, "artifactId", name);
-        set(doc, project, "version", version);
-        set(doc, project, "name", name);
+    public String build() throws XMLStreamException {
+        return new String(buildBytes(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the POM straight out as UTF-8, without building a document first.
+     */
+    public byte[] buildBytes() throws XMLStreamException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(512 + 256 * dependencies.dependencies.size());
+        XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(baos, "UTF-8");
+
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.writeStartElement("project");
+        writer.writeDefaultNamespace("http://maven.apache.org/POM/4.0.0");
+        writer.writeNamespace("xsi", "http://www.w3.org/2001/XMLSchema-instance");
+        writer.writeAttribute("xsi:schemaLocation", "http://maven.apache.org/POM/4.0.0 http://maven.apache.org/xsd/maven-4.0.0.xsd");
+
+        set(writer, "modelVersion", "4.0.0");
+        set(writer, "groupId", group);
+        set(writer, "artifactId", name);
+        set(writer, "version", version);
+        set(writer, "name", name);
         if (description != null) {
-            set(doc, project, "description", description);
+            set(writer, "description", description);
         }
 
         if (!dependencies.dependencies.isEmpty()) {
-            Element dependencies = doc.createElement("dependencies");
+            writer.writeStartElement("dependencies");
             for (Dependencies.Dependency dependency : this.dependencies.dependencies) {
-                Element dep = doc.createElement("dependency");
-                set(doc, dep, "groupId", dependency.group);
-                set(doc, dep, "artifactId", dependency.name);
-                set(doc, dep, "version", dependency.version);
+                writer.writeStartElement("dependency");
+                set(writer, "groupId", dependency.group);
+                set(writer, "artifactId", dependency.name);
+                set(writer, "version", dependency.version);
                 if (dependency.classifier != null) {
-                    set(doc, dep, "classifier", dependency.classifier);
+                    set(writer, "classifier", dependency.classifier);
                 }
                 if (dependency.extension != null) {
-                    set(doc, dep, "extension", dependency.extension);
+                    set(writer, "extension", dependency.extension);
                 }
                 if (dependency.scope != null) {
-                    set(doc, dep, "scope", dependency.scope);
+                    set(writer, "scope", dependency.scope);
                 }
-                dependencies.appendChild(dep);
+                writer.writeEndElement();
             }
-            project.appendChild(dependencies);
+            writer.writeEndElement();
         }
 
-        doc.normalizeDocument();
-
-        TransformerFactory transformerFactory = TransformerFactory.newInstance();
-        Transformer transformer = transformerFactory.newTransformer();
-        DOMSource source = new DOMSource(doc);
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        writer.close();
+        return baos.toByteArray();
+    }
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        StreamResult result = new StreamResult(baos);
-        transformer.transform(source, result);
+    /**
+     * Reads the dependencies listed in a POM file.
+     */
+    public static List<ArtifactIdentifier> parseDependencies(byte[] pom) throws XMLStreamException {
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(pom));
+
+        List<ArtifactIdentifier> dependencies = new ArrayList<>();
+        Map<String, String> dep = null; // The direct children of the dependency being read
+        int depth = 0, depDepth = -1;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                if (dep == null && reader.getLocalName().equals("dependency")) {
+                    dep = new HashMap<>();
+                    depDepth = depth;
+                } else if (dep != null && depth == depDepth + 1 && DEPENDENCY_FIELDS.contains(reader.getLocalName())) {
+                    dep.put(reader.getLocalName(), reader.getElementText().trim());
+                    depth--; // getElementText consumes the end tag
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (dep != null && depth == depDepth) {
+                    addDependency(dependencies, dep);
+                    dep = null;
+                }
+                depth--;
+            }
+        }
+        reader.close();
+        return dependencies;
+    }
 
-        return new String(baos.toByteArray());
+    private static void addDependency(List<ArtifactIdentifier> dependencies, Map<String, String> dep) {
+        String group = dep.get("groupId");
+        String name = dep.get("artifactId");
+        String version = dep.get("version");
+        if (group == null || name == null || version == null) return;
+
+        String extension = dep.get("extension");
+        if (extension == null) extension = dep.get("type");
+        if (extension == null) extension = "jar";
+        dependencies.add(new DefaultArtifactIdentifier(new DefaultModuleVersionIdentifier(group, name, version),
+                name, extension, extension, dep.get("classifier")));
     }
 
-    private static void set(Document doc, Element parent, String name, String value) {
-        Element description = doc.createElement(name);
-        description.appendChild(doc.createTextNode(value));
-        parent.appendChild(description);
+    private static void set(XMLStreamWriter writer, String name, String value) throws XMLStreamException {
+        writer.writeStartElement(name);
+        writer.writeCharacters(value);
+        writer.writeEndElement();
     }
 
     public class Dependencies {
@@ -128,7 +189,7 @@ public class POMBuilder {
             Matcher matcher = PATTERN_ARTIFACT.matcher(artifact);
             if (!matcher.matches()) throw new IllegalArgumentException("Invalid maven artifact specifier: " + artifact);
             return add(matcher.group("group"), matcher.group("name"), matcher.group("version"),
-                    matcher.group("extension"), matcher.group("extension"), scope);
+                    matcher.group("classifier"), matcher.group("extension"), scope);
         }
 
         public Dependency add(String group, String name, String version,
@@ -0,0 +1,79 @@
+package net.minecraftforge.gradle.shared.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Checks whether strings start with any of a set of prefixes.<br/>
+ * The prefixes are compiled into a trie, so each check walks the string once no matter how many prefixes there are.
+ */
+public final class PrefixMatcher {
+
+    private final Node root;
+
+    public PrefixMatcher(Collection<String> prefixes) {
+        Builder builder = new Builder();
+        for (String prefix : prefixes) {
+            Builder node = builder;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), $ -> new Builder());
+            }
+            node.terminal = true;
+        }
+        this.root = builder.compile();
+    }
+
+    /**
+     * Checks whether the given string starts with any of the prefixes.
+     */
+    public boolean matches(String str) {
+        Node node = root;
+        if (node.terminal) return true;
+        for (int i = 0; i < str.length(); i++) {
+            int idx = Arrays.binarySearch(node.keys, str.charAt(i));
+            if (idx < 0) return false;
+            node = node.children[idx];
+            if (node.terminal) return true; // No need to look any further
+        }
+        return false;
+    }
+
+    private static final class Node {
+
+        private final char[] keys;
+        private final Node[] children;
+        private final boolean terminal;
+
+        private Node(char[] keys, Node[] children, boolean terminal) {
+            this.keys = keys;
+            this.children = children;
+            this.terminal = terminal;
+        }
+
+    }
+
+    private static final class Builder {
+
+        private final Map<Character, Builder> children = new TreeMap<>();
+        private boolean terminal = false;
+
+        private Node compile() {
+            // Anything past a terminal node can never change the result
+            if (terminal) return new Node(new char[0], new Node[0], true);
+
+            char[] keys = new char[children.size()];
+            Node[] nodes = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Builder> entry : children.entrySet()) {
+                keys[i] = entry.getKey();
+                nodes[i] = entry.getValue().compile();
+                i++;
+            }
+            return new Node(keys, nodes, false);
+        }
+
+    }
+
+}
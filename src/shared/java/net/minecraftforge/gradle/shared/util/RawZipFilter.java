@@ -0,0 +1,146 @@
+package net.minecraftforge.gradle.shared.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Predicate;
+import java.util.zip.ZipException;
+
+/**
+ * Copies a subset of the entries in a zip file into a new one, without inflating or deflating anything.<br/>
+ * The local header and compressed data of every kept entry are copied byte for byte, and a new central
+ * directory is written pointing at their new positions. Zip64 archives are not supported.
+ */
+public final class RawZipFilter {
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_HEADER = 0x06054b50;
+    private static final int DATA_DESCRIPTOR = 0x08074b50;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private RawZipFilter() {
+    }
+
+    /**
+     * Copies the entries of the input zip whose name matches the filter into the output zip.
+     */
+    public static void filter(File input, File output, Predicate<String> filter) throws IOException {
+        try (FileChannel in = FileChannel.open(input.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output.toPath(), StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer end = findEndHeader(in);
+            int entries = end.getShort(10) & 0xFFFF;
+            long directorySize = end.getInt(12) & 0xFFFFFFFFL;
+            long directoryOffset = end.getInt(16) & 0xFFFFFFFFL;
+            if (entries == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+                throw new ZipException("Zip64 archives are not supported: " + input);
+            }
+
+            ByteBuffer directory = read(in, directoryOffset, (int) directorySize);
+            byte[] directoryBytes = directory.array();
+            ByteArrayOutputStream newDirectory = new ByteArrayOutputStream();
+            int kept = 0;
+
+            int pos = 0;
+            for (int i = 0; i < entries; i++) {
+                if (directory.getInt(pos) != CENTRAL_HEADER) throw new ZipException("Corrupt central directory: " + input);
+                int nameLength = directory.getShort(pos + 28) & 0xFFFF;
+                int extraLength = directory.getShort(pos + 30) & 0xFFFF;
+                int commentLength = directory.getShort(pos + 32) & 0xFFFF;
+                int recordLength = CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+                String name = new String(directoryBytes, pos + CENTRAL_HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+
+                if (filter.test(name)) {
+                    int flags = directory.getShort(pos + 8) & 0xFFFF;
+                    long compressedSize = directory.getInt(pos + 20) & 0xFFFFFFFFL;
+                    long localOffset = directory.getInt(pos + 42) & 0xFFFFFFFFL;
+
+                    // Work out where the entry ends: header, name, extra, data and an optional descriptor
+                    ByteBuffer local = read(in, localOffset, LOCAL_HEADER_SIZE);
+                    if (local.getInt(0) != LOCAL_HEADER) throw new ZipException("Corrupt local header for " + name + ": " + input);
+                    long entryEnd = localOffset + LOCAL_HEADER_SIZE + (local.getShort(26) & 0xFFFF) + (local.getShort(28) & 0xFFFF) + compressedSize;
+                    if ((flags & 8) != 0) {
+                        entryEnd += read(in, entryEnd, 4).getInt(0) == DATA_DESCRIPTOR ? 16 : 12;
+                    }
+
+                    long newOffset = out.position();
+                    transfer(in, localOffset, entryEnd - localOffset, out);
+
+                    // Same central directory record, pointing at the new location of the entry
+                    ByteBuffer record = ByteBuffer.wrap(Arrays.copyOfRange(directoryBytes, pos, pos + recordLength)).order(ByteOrder.LITTLE_ENDIAN);
+                    record.putInt(42, (int) newOffset);
+                    newDirectory.write(record.array());
+                    kept++;
+                }
+                pos += recordLength;
+            }
+            if (kept > 0xFFFF) throw new ZipException("Too many entries for a non-Zip64 archive: " + output);
+
+            long newDirectoryOffset = out.position();
+            write(out, ByteBuffer.wrap(newDirectory.toByteArray()));
+
+            ByteBuffer newEnd = ByteBuffer.allocate(END_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            newEnd.putInt(END_HEADER)
+                    .putShort((short) 0)
+                    .putShort((short) 0)
+                    .putShort((short) kept)
+                    .putShort((short) kept)
+                    .putInt(newDirectory.size())
+                    .putInt((int) newDirectoryOffset)
+                    .putShort((short) 0);
+            newEnd.flip();
+            write(out, newEnd);
+        }
+    }
+
+    /**
+     * Locates the end of central directory record, which may be followed by a comment.
+     */
+    private static ByteBuffer findEndHeader(FileChannel in) throws IOException {
+        long size = in.size();
+        int tailLength = (int) Math.min(size, END_HEADER_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = read(in, size - tailLength, tailLength);
+        for (int pos = tailLength - END_HEADER_SIZE; pos >= 0; pos--) {
+            if (tail.getInt(pos) == END_HEADER) {
+                return ByteBuffer.wrap(tail.array(), pos, END_HEADER_SIZE).slice().order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+        throw new ZipException("Not a zip file");
+    }
+
+    private static ByteBuffer read(FileChannel in, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) == -1) throw new ZipException("Unexpected end of zip file");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static void transfer(FileChannel in, long position, long count, FileChannel out) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            long n = in.transferTo(position + transferred, count - transferred, out);
+            if (n <= 0) throw new ZipException("Unexpected end of zip file");
+            transferred += n;
+        }
+    }
+
+}
@@ -22,8 +22,10 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -34,6 +36,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -101,26 +107,17 @@ public class Util {
     }
 
     /**
-     * Unzips a file to a folder named {@code extracted} in the same directory.
+     * Reads a CSV file and returns a map of the two requested columns.
      */
-    public static File unzip(File file) {
-        File target = new File(file.getParentFile(), "extracted");
-        if (target.exists()) return target;
-
-        try {
-            Util.unzip(file, target);
-        } catch (Exception ex) {
-            throw new RuntimeException(ex);
-        }
-
-        return target;
+    public static Map<String, String> readCSV(File file, String column1, String column2) throws IOException {
+        return readCSV(new FileReader(file), column1, column2);
     }
 
     /**
-     * Reads a CSV file and returns a map of the two requested columns.
+     * Reads CSV data and returns a map of the two requested columns. The reader is closed once done.
      */
-    public static Map<String, String> readCSV(File file, String column1, String column2) throws IOException {
-        CSVReader reader = new CSVReader(new FileReader(file));
+    public static Map<String, String> readCSV(Reader in, String column1, String column2) throws IOException {
+        CSVReader reader = new CSVReader(in);
 
         Map<String, String> mappings = new HashMap<>();
 
@@ -184,7 +181,7 @@ public class Util {
     public static JsonObject readJSON(String url) {
         try {
             Gson gson = new Gson();
-            Reader reader = new InputStreamReader(new URL(url).openStream());
+            Reader reader = new InputStreamReader(HttpFetcher.openStream(new URL(url)));
             JsonObject json = gson.fromJson(reader, JsonObject.class);
             reader.close();
             return json;
@@ -202,6 +199,39 @@ public class Util {
                 os == OperatingSystem.LINUX ? "linux" : null;
     }
 
+    /**
+     * Runs a task that may throw an {@link IOException} asynchronously on the given executor.
+     */
+    public static <T> CompletableFuture<T> supplyAsync(IOSupplier<T> supplier, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return supplier.get();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }, executor);
+    }
+
+    /**
+     * Waits for a future to complete, unwrapping any {@link IOException} it failed with.
+     */
+    public static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            while ((cause instanceof CompletionException || cause instanceof UncheckedIOException) && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
     /**
      * Creates a copy of a dependency that has no transitive elements.
      */
@@ -0,0 +1,172 @@
+package net.minecraftforge.gradle.shared.mappings;
+
+import net.minecraftforge.gradle.api.mapping.MappingEntry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class MappingTableTest {
+
+    // Enough classes for the symbol table to grow and rehash a few times
+    private static final int CLASSES = 300;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsWhatItWrites() throws IOException {
+        MappingTable table = createTable();
+        File file = new File(folder.getRoot(), "mappings.bin");
+        table.write(file);
+        MappingTable read = MappingTable.read(file);
+
+        for (MappingTable.Naming from : MappingTable.Naming.values()) {
+            for (MappingTable.Naming to : MappingTable.Naming.values()) {
+                if (from != to) assertEquals(from + " -> " + to, collect(table, from, to), collect(read, from, to));
+            }
+        }
+
+        // The symbol table's hashes and slots are read as they are, so lookups and interning must still work
+        SymbolTable symbols = read.getSymbols();
+        assertEquals(table.getSymbols().size(), symbols.size());
+        for (int id = 0; id < symbols.size(); id++) {
+            assertEquals(id, symbols.find(symbols.get(id)));
+            assertEquals(id, symbols.intern(symbols.get(id)));
+        }
+        assertEquals(-1, symbols.find("not/a/Symbol"));
+        int id = symbols.intern("not/a/Symbol");
+        assertEquals(table.getSymbols().size(), id);
+        assertEquals(id, symbols.find("not/a/Symbol"));
+    }
+
+    @Test
+    public void appliesMCPNames() {
+        MappingTable table = createTable();
+        Map<MappingEntry, MappingEntry> mappings = new HashMap<>();
+        table.forEach(MappingTable.Naming.NOTCH, MappingTable.Naming.MCP, mappings::put);
+
+        assertEquals(MappingEntry.forField("net/minecraft/Class0", "health"), mappings.get(MappingEntry.forField("a0", "a")));
+        assertEquals(MappingEntry.forField("net/minecraft/Class0", "field_1_b"), mappings.get(MappingEntry.forField("a0", "b")));
+        assertEquals(MappingEntry.forMethod("net/minecraft/Class1", "tick", "(Lnet/minecraft/Class0;)V"),
+                mappings.get(MappingEntry.forMethod("a1", "a", "(La0;)V")));
+        assertEquals(MappingEntry.forPackage("net/minecraft/\u00fcn\u00efcode"), mappings.get(MappingEntry.forPackage("\u00fc")));
+    }
+
+    @Test
+    public void rejectsOutOfRangeSlots() throws IOException {
+        File file = writeTable();
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        int size = buffer.getInt(8);
+        int slots = 8 + 12 + size * 8;
+        for (int slot = 0; slot < buffer.getInt(12); slot++) {
+            if (buffer.getInt(slots + slot * 4) == 0) {
+                buffer.putInt(slots + slot * 4, size + 1);
+                break;
+            }
+        }
+        Files.write(file.toPath(), buffer.array());
+        assertCorrupt(file);
+    }
+
+    @Test
+    public void rejectsOutOfRangeOffsets() throws IOException {
+        File file = writeTable();
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        int size = buffer.getInt(8);
+        buffer.putInt(8 + 12 + (size - 1) * 4, buffer.getInt(16) + 1); // Past the end of the pool
+        Files.write(file.toPath(), buffer.array());
+        assertCorrupt(file);
+    }
+
+    @Test
+    public void rejectsTruncatedFiles() throws IOException {
+        File file = writeTable();
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        for (int length : new int[]{0, 4, 8, 20, bytes.length / 2, bytes.length - 4}) {
+            byte[] truncated = new byte[length];
+            System.arraycopy(bytes, 0, truncated, 0, length);
+            Files.write(file.toPath(), truncated);
+            assertCorrupt(file);
+        }
+    }
+
+    @Test
+    public void corruptionIsOnlyEverAnIOException() throws IOException {
+        File file = writeTable();
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        for (int pos = 0; pos < bytes.length; pos += 3) {
+            byte[] corrupt = bytes.clone();
+            corrupt[pos] ^= (byte) (0x55 + pos);
+            Files.write(file.toPath(), corrupt);
+            try {
+                MappingTable table = MappingTable.read(file);
+                for (MappingTable.Naming from : MappingTable.Naming.values()) {
+                    for (MappingTable.Naming to : MappingTable.Naming.values()) {
+                        table.forEach(from, to, (a, b) -> {
+                        });
+                    }
+                }
+            } catch (IOException ex) {
+                // Corruption was detected, which means the mappings get parsed again
+            }
+        }
+    }
+
+    private File writeTable() throws IOException {
+        File file = new File(folder.getRoot(), "mappings.bin");
+        createTable().write(file);
+        return file;
+    }
+
+    private static void assertCorrupt(File file) {
+        try {
+            MappingTable.read(file);
+            fail("Corrupt mappings were read");
+        } catch (IOException ex) {
+            // Expected
+        }
+    }
+
+    private static MappingTable createTable() {
+        SymbolTable symbols = new SymbolTable(16);
+        MappingTable table = new MappingTable(symbols);
+        table.addPackage(symbols.intern("\u00fc"), symbols.intern("net/minecraft/\u00fcn\u00efcode"));
+        for (int i = 0; i < CLASSES; i++) {
+            table.addClass(symbols.intern("a" + i), symbols.intern("net/minecraft/Class" + i));
+        }
+        int notchOwner = symbols.intern("a0"), srgOwner = symbols.intern("net/minecraft/Class0");
+        table.addField(notchOwner, symbols.intern("a"), srgOwner, symbols.intern("field_1_a"), symbols.intern("field_1_a"));
+        table.addField(notchOwner, symbols.intern("b"), srgOwner, symbols.intern("field_1_b"), symbols.intern("field_1_b"));
+        table.addMethod(symbols.intern("a1"), symbols.intern("a"), symbols.intern("(La0;)V"),
+                symbols.intern("net/minecraft/Class1"), symbols.intern("func_2_a"), symbols.intern("(Lnet/minecraft/Class0;)V"),
+                symbols.intern("func_2_a"));
+
+        Map<String, String> fields = new HashMap<>();
+        fields.put("field_1_a", "health");
+        fields.put("field_9_unused", "unused");
+        Map<String, String> methods = new HashMap<>();
+        methods.put("func_2_a", "tick");
+        table.applyMCPNames(fields, methods);
+        return table;
+    }
+
+    private static List<Map.Entry<MappingEntry, MappingEntry>> collect(MappingTable table, MappingTable.Naming from, MappingTable.Naming to) {
+        List<Map.Entry<MappingEntry, MappingEntry>> entries = new ArrayList<>();
+        table.forEach(from, to, (a, b) -> entries.add(new AbstractMap.SimpleEntry<>(a, b)));
+        return entries;
+    }
+
+}
@@ -0,0 +1,111 @@
+package net.minecraftforge.gradle.shared.repo;
+
+import org.gradle.api.artifacts.ArtifactIdentifier;
+import org.gradle.internal.hash.HashUtil;
+import org.gradle.internal.hash.HashValue;
+import org.gradle.internal.resource.metadata.ExternalResourceMetaData;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ChecksumIndexTest {
+
+    private static final byte[] CONTENTS = "Some generated artifact".getBytes(StandardCharsets.UTF_8);
+    private static final HashValue SHA1 = HashUtil.sha1(CONTENTS);
+    private static final HashValue MD5 = HashUtil.createHash(new ByteArrayInputStream(CONTENTS), "MD5");
+    // What the provider declares up front, a hash of its inputs rather than of the contents
+    private static final HashValue KEY = HashUtil.sha1("inputs".getBytes(StandardCharsets.UTF_8));
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final ArtifactIdentifier identifier = MavenArtifactPath.parse("/net/minecraft/joined/1.12.2/joined-1.12.2.jar");
+    private final AtomicInteger produced = new AtomicInteger();
+
+    @Test
+    public void recognizesChecksumExtensions() {
+        assertEquals("sha1", ChecksumIndex.getAlgorithm("jar.sha1"));
+        assertEquals("md5", ChecksumIndex.getAlgorithm("pom.md5"));
+        assertNull(ChecksumIndex.getAlgorithm("jar"));
+        assertNull(ChecksumIndex.getAlgorithm("sha1"));
+        assertNull(ChecksumIndex.getAlgorithm("jar.sha256"));
+    }
+
+    @Test
+    public void producesEachArtifactOnce() throws IOException {
+        ChecksumIndex index = new ChecksumIndex(folder.newFolder("checksums"), null, null);
+        assertEquals(SHA1, index.get(identifier, "sha1", () -> resource(KEY)));
+        assertEquals(MD5, index.get(identifier, "md5", () -> resource(KEY)));
+        assertEquals(SHA1, index.get(identifier, "sha1", () -> resource(KEY)));
+        assertEquals(1, produced.get());
+    }
+
+    @Test
+    public void keepsChecksumsOnDisk() throws IOException {
+        File directory = folder.newFolder("checksums");
+        new ChecksumIndex(directory, null, null).get(identifier, "sha1", () -> resource(KEY));
+
+        ChecksumIndex index = new ChecksumIndex(directory, null, null);
+        assertEquals(MD5, index.get(identifier, "md5", () -> resource(KEY)));
+        assertEquals(1, produced.get());
+    }
+
+    @Test
+    public void usesRecordedChecksums() throws IOException {
+        ChecksumIndex index = new ChecksumIndex(null, null, null);
+        index.record(KEY, "sha1", SHA1);
+        assertEquals(SHA1, index.get(identifier, "sha1", () -> resource(KEY)));
+        assertEquals(0, produced.get());
+    }
+
+    @Test
+    public void producesUndeclaredArtifactsEveryTime() throws IOException {
+        ChecksumIndex index = new ChecksumIndex(folder.newFolder("checksums"), null, null);
+        assertEquals(SHA1, index.get(identifier, "sha1", () -> resource(null)));
+        assertEquals(SHA1, index.get(identifier, "sha1", () -> resource(null)));
+        assertEquals(2, produced.get());
+    }
+
+    @Test
+    public void formatsLikeMaven() {
+        assertEquals(SHA1.asZeroPaddedHexString(40), new String(ChecksumIndex.format(SHA1, "sha1"), StandardCharsets.UTF_8));
+        assertEquals(32, ChecksumIndex.format(MD5, "md5").length);
+    }
+
+    private StreamedResource resource(@Nullable HashValue hash) {
+        return new StreamedResource() {
+            @Override
+            public InputStream getStream() {
+                produced.incrementAndGet();
+                return new ByteArrayInputStream(CONTENTS);
+            }
+
+            @Override
+            public ExternalResourceMetaData getMetadata(URI uri) {
+                return null;
+            }
+
+            @Override
+            public HashValue getHash() {
+                return hash;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+}
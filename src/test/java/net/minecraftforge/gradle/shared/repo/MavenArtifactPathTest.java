@@ -0,0 +1,80 @@
+package net.minecraftforge.gradle.shared.repo;
+
+import org.gradle.api.artifacts.ArtifactIdentifier;
+import org.junit.Test;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MavenArtifactPathTest {
+
+    // What CustomRepository used to match paths against, which the parser has to agree with
+    private static final Pattern URL_PATTERN = Pattern.compile(
+            "^/(?<group>\\S+(?:/\\S+)*)/(?<name>\\S+)/(?<version>\\S+)/" +
+                    "\\2-\\3(?:-(?<classifier>[^.\\s]+))?\\.(?<extension>\\S+)$");
+
+    private static final String[] PATHS = {
+            // Artifacts
+            "/net/minecraft/client/1.12.2/client-1.12.2.jar",
+            "/net/minecraft/client/1.12.2/client-1.12.2.pom",
+            "/net/minecraft/server-pure/1.12.2/server-pure-1.12.2.jar",
+            "/de/oceanlabs/mcp/mcp/1.12.2/mcp-1.12.2-srg.zip",
+            "/org/lwjgl/lwjgl/lwjgl-platform/2.9.4-nightly-20150209/lwjgl-platform-2.9.4-nightly-20150209-natives-linux.jar",
+            "/com/mojang/realms/1.10.19/realms-1.10.19-sources.jar",
+            "/g/n/1.0/n-1.0.tar.gz",
+            "/g/n/1.0/n-1.0-a-b.jar",
+            "/g/n/1.0/n-1.0.jar.sha1",
+            "/g/n/1.0/n-1.0-sources.jar.md5",
+            "/g/n-n/1-1/n-n-1-1.jar",
+            // Not artifacts
+            "/g/n/1.0/maven-metadata.xml",
+            "/g/n/maven-metadata.xml",
+            "/g/n/1.0/n-1.0",
+            "/g/n/1.0/n-1.0.",
+            "/g/n/1.0/n-1.0-.jar",
+            "/g/n/1.0/n-1.0-sources",
+            "/g/n/1.0/m-1.0.jar",
+            "/g/n/1.0/n-1.1.jar",
+            "/g/n/1.0/n1.0.jar",
+            "/n/1.0/n-1.0.jar",
+            "//n/1.0/n-1.0.jar",
+            "g/n/1.0/n-1.0.jar",
+            "/g/n/1.0/n-1.0 .jar",
+            "/g/n/1.0/",
+            "/",
+            ""
+    };
+
+    @Test
+    public void acceptsTheSamePathsAsTheRegex() {
+        for (String path : PATHS) {
+            Matcher matcher = URL_PATTERN.matcher(path);
+            ArtifactIdentifier identifier = MavenArtifactPath.parse(path);
+            if (!matcher.matches()) {
+                assertNull(path, identifier);
+                continue;
+            }
+            assertEquals(path, matcher.group("group").replace('/', '.'), identifier.getModuleVersionIdentifier().getGroup());
+            assertEquals(path, matcher.group("name"), identifier.getModuleVersionIdentifier().getName());
+            assertEquals(path, matcher.group("version"), identifier.getModuleVersionIdentifier().getVersion());
+            assertEquals(path, matcher.group("name"), identifier.getName());
+            assertEquals(path, matcher.group("classifier"), identifier.getClassifier());
+            assertEquals(path, matcher.group("extension"), identifier.getExtension());
+            assertEquals(path, matcher.group("extension"), identifier.getType());
+        }
+    }
+
+    @Test
+    public void formatsWhatItParses() {
+        for (String path : PATHS) {
+            ArtifactIdentifier identifier = MavenArtifactPath.parse(path);
+            if (identifier != null) {
+                assertEquals(path, "/" + MavenArtifactPath.format(identifier));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package net.minecraftforge.gradle.shared.util;
+
+import org.gradle.internal.hash.HashUtil;
+import org.gradle.internal.hash.HashValue;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class HashingInputStreamTest {
+
+    private static final byte[] CONTENTS = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+    private static final HashValue SHA1 = HashUtil.sha1(CONTENTS);
+
+    @Test
+    public void hashesWhatIsRead() throws IOException {
+        HashingInputStream in = new HashingInputStream(new ByteArrayInputStream(CONTENTS));
+        assertEquals('T', in.read());
+        assertEquals(4, in.skip(4));
+        byte[] buffer = new byte[8];
+        assertEquals(8, in.read(buffer, 0, buffer.length));
+        assertEquals(SHA1, in.getHash()); // Drains the rest
+        assertEquals(CONTENTS.length, in.getCount());
+    }
+
+    @Test
+    public void acceptsMatchingContents() throws IOException {
+        HashingInputStream in = new HashingInputStream(new ByteArrayInputStream(CONTENTS), SHA1, CONTENTS.length, "fox");
+        assertEquals(SHA1, in.getHash());
+    }
+
+    @Test
+    public void rejectsWrongLength() {
+        assertRejected(new HashingInputStream(new ByteArrayInputStream(CONTENTS), SHA1, CONTENTS.length + 1, "fox"));
+    }
+
+    @Test
+    public void rejectsWrongHash() {
+        byte[] corrupt = CONTENTS.clone();
+        corrupt[corrupt.length - 1] ^= 1;
+        assertRejected(new HashingInputStream(new ByteArrayInputStream(corrupt), SHA1, CONTENTS.length, "fox"));
+    }
+
+    private static void assertRejected(HashingInputStream in) {
+        try {
+            in.getHash();
+            fail("Corrupt contents were accepted");
+        } catch (IOException ex) {
+            // Expected
+        }
+    }
+
+}
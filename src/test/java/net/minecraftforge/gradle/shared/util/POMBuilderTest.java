@@ -0,0 +1,55 @@
+package net.minecraftforge.gradle.shared.util;
+
+import org.gradle.api.artifacts.ArtifactIdentifier;
+import org.junit.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class POMBuilderTest {
+
+    @Test
+    public void writesWhatItParses() throws XMLStreamException {
+        POMBuilder builder = new POMBuilder("net.minecraft", "client", "1.12.2");
+        builder.dependencies(deps -> {
+            deps.add("org.lwjgl.lwjgl:lwjgl-platform:2.9.4:natives-linux", "compile");
+            deps.add("com.google.guava:guava:21.0", "compile");
+            deps.add("net.minecraft:server:1.12.2:pure@zip", null);
+        });
+
+        List<ArtifactIdentifier> dependencies = POMBuilder.parseDependencies(builder.buildBytes());
+        assertEquals(3, dependencies.size());
+        assertDependency(dependencies.get(0), "org.lwjgl.lwjgl", "lwjgl-platform", "2.9.4", "natives-linux", "jar");
+        assertDependency(dependencies.get(1), "com.google.guava", "guava", "21.0", null, "jar");
+        assertDependency(dependencies.get(2), "net.minecraft", "server", "1.12.2", "pure", "zip");
+    }
+
+    @Test
+    public void onlyReadsDirectChildrenOfDependencies() throws XMLStreamException {
+        String pom = "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">"
+                + "<groupId>g</groupId><artifactId>a</artifactId><version>1</version>"
+                + "<dependencies><dependency>"
+                + "<groupId>org.example</groupId><artifactId>lib</artifactId><version>2.0</version><type>zip</type>"
+                + "<exclusions><exclusion><groupId>org.other</groupId><artifactId>other</artifactId></exclusion></exclusions>"
+                + "</dependency><dependency>"
+                + "<groupId>org.example</groupId><artifactId>incomplete</artifactId>"
+                + "</dependency></dependencies></project>";
+
+        List<ArtifactIdentifier> dependencies = POMBuilder.parseDependencies(pom.getBytes(StandardCharsets.UTF_8));
+        assertEquals(1, dependencies.size());
+        assertDependency(dependencies.get(0), "org.example", "lib", "2.0", null, "zip");
+    }
+
+    private static void assertDependency(ArtifactIdentifier identifier, String group, String name, String version,
+                                         String classifier, String extension) {
+        assertEquals(group, identifier.getModuleVersionIdentifier().getGroup());
+        assertEquals(name, identifier.getModuleVersionIdentifier().getName());
+        assertEquals(version, identifier.getModuleVersionIdentifier().getVersion());
+        assertEquals(classifier, identifier.getClassifier());
+        assertEquals(extension, identifier.getExtension());
+    }
+
+}
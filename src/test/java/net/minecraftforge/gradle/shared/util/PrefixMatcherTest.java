@@ -0,0 +1,66 @@
+package net.minecraftforge.gradle.shared.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PrefixMatcherTest {
+
+    private static final List<String> PREFIXES = Arrays.asList(
+            "org/apache/", "com/google/", "com/mojang/authlib/", "com/mojang/util/", "io/netty/", "it/unimi/dsi/fastutil/");
+
+    @Test
+    public void matchesPrefixes() {
+        PrefixMatcher matcher = new PrefixMatcher(PREFIXES);
+        assertTrue(matcher.matches("org/apache/commons/io/IOUtils.class"));
+        assertTrue(matcher.matches("com/google/"));
+        assertTrue(matcher.matches("com/mojang/authlib/GameProfile.class"));
+        assertTrue(matcher.matches("it/unimi/dsi/fastutil/ints/IntList.class"));
+
+        assertFalse(matcher.matches("com/mojang/realms/Realms.class"));
+        assertFalse(matcher.matches("com/mojang/"));
+        assertFalse(matcher.matches("org/apache"));
+        assertFalse(matcher.matches("net/minecraft/server/MinecraftServer.class"));
+        assertFalse(matcher.matches(""));
+    }
+
+    @Test
+    public void agreesWithStartsWith() {
+        PrefixMatcher matcher = new PrefixMatcher(PREFIXES);
+        String[] names = {
+                "org/apache/logging/log4j/Logger.class", "org/apachex/Foo.class", "com/googl/Foo.class",
+                "com/mojang/util/UUIDTypeAdapter.class", "com/mojang/utils/Foo.class", "io/netty/", "io/nett",
+                "it/unimi/dsi/", "META-INF/MANIFEST.MF", "a", "pack.png"
+        };
+        for (String name : names) {
+            assertEquals(name, PREFIXES.stream().anyMatch(name::startsWith), matcher.matches(name));
+        }
+    }
+
+    @Test
+    public void shorterPrefixWins() {
+        PrefixMatcher matcher = new PrefixMatcher(Arrays.asList("com/google/common/", "com/"));
+        assertTrue(matcher.matches("com/mojang/Foo.class"));
+        assertTrue(matcher.matches("com/google/common/base/Preconditions.class"));
+        assertFalse(matcher.matches("co"));
+    }
+
+    @Test
+    public void emptyPrefixMatchesEverything() {
+        assertTrue(new PrefixMatcher(Collections.singletonList("")).matches("anything"));
+        assertTrue(new PrefixMatcher(Collections.singletonList("")).matches(""));
+    }
+
+    @Test
+    public void noPrefixesMatchNothing() {
+        assertFalse(new PrefixMatcher(Collections.emptyList()).matches("anything"));
+        assertFalse(new PrefixMatcher(Collections.emptyList()).matches(""));
+    }
+
+}
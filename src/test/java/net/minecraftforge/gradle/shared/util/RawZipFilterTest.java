@@ -0,0 +1,119 @@
+package net.minecraftforge.gradle.shared.util;
+
+import org.gradle.internal.impldep.org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class RawZipFilterTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keepsOnlyMatchingEntries() throws IOException {
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        contents.put("net/minecraft/server/MinecraftServer.class", bytes("server", 1000));
+        contents.put("net/minecraft/server/Empty.class", new byte[0]);
+        contents.put("com/google/common/base/Preconditions.class", bytes("guava", 2000));
+        contents.put("META-INF/MANIFEST.MF", bytes("Manifest-Version: 1.0\n", 1));
+        contents.put("io/netty/Netty.class", bytes("netty", 500));
+        contents.put("pack.png", bytes("png", 300));
+
+        File input = folder.newFile("server.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(input))) {
+            out.setComment("A comment after the central directory");
+            out.putNextEntry(new ZipEntry("net/minecraft/"));
+            out.closeEntry();
+            boolean stored = false;
+            for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+                // Alternate between stored entries and deflated ones, which have data descriptors
+                ZipEntry zipEntry = new ZipEntry(entry.getKey());
+                if (stored = !stored) {
+                    CRC32 crc = new CRC32();
+                    crc.update(entry.getValue());
+                    zipEntry.setMethod(ZipEntry.STORED);
+                    zipEntry.setSize(entry.getValue().length);
+                    zipEntry.setCrc(crc.getValue());
+                }
+                out.putNextEntry(zipEntry);
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+
+        File output = folder.newFile("server-pure.jar");
+        RawZipFilter.filter(input, output, name -> !name.startsWith("com/google/") && !name.startsWith("io/netty/"));
+        contents.remove("com/google/common/base/Preconditions.class");
+        contents.remove("io/netty/Netty.class");
+
+        // Through the central directory
+        try (ZipFile zip = new ZipFile(output)) {
+            assertEquals(contents.size() + 1, zip.size());
+            assertNotNull(zip.getEntry("net/minecraft/"));
+            for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+                ZipEntry zipEntry = zip.getEntry(entry.getKey());
+                assertNotNull(entry.getKey(), zipEntry);
+                try (InputStream in = zip.getInputStream(zipEntry)) {
+                    assertArrayEquals(entry.getKey(), entry.getValue(), IOUtils.toByteArray(in));
+                }
+            }
+        }
+
+        // And through the local headers, which is how the entries were copied
+        Map<String, byte[]> streamed = new LinkedHashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new FileInputStream(output))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (!entry.isDirectory()) streamed.put(entry.getName(), IOUtils.toByteArray(in));
+            }
+        }
+        assertEquals(contents.keySet(), streamed.keySet());
+        for (Map.Entry<String, byte[]> entry : contents.entrySet()) {
+            assertArrayEquals(entry.getKey(), entry.getValue(), streamed.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void keepsNothing() throws IOException {
+        File input = folder.newFile("input.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(input))) {
+            out.putNextEntry(new ZipEntry("a.txt"));
+            out.write(bytes("a", 10));
+            out.closeEntry();
+        }
+
+        File output = folder.newFile("output.zip");
+        RawZipFilter.filter(input, output, name -> false);
+        try (ZipFile zip = new ZipFile(output)) {
+            assertEquals(0, zip.size());
+        }
+    }
+
+    private static byte[] bytes(String text, int repeat) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < repeat; i++) {
+            sb.append(text).append(i);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+}